@@ -39,6 +39,12 @@ public abstract class AbstractDiffModel<DF extends DiffFile> {
 	 */
 	private List<CommitModel> commits;
 
+	/**
+	 * If the commits are limited, the id of the last listed commit, from which the next page of
+	 * commits can be requested. {@code null} if there are no more commits.
+	 */
+	private String commitsCursor;
+
 	@JsonIgnore
 	public boolean isAhead() {
 		return !commits.isEmpty();
@@ -63,6 +69,21 @@ public abstract class AbstractDiffModel<DF extends DiffFile> {
 		private String newPath;
 		private List<DC> contexts;
 
+		/**
+		 * True if the contexts are left out, because the file exceeds the size limits for a diff.
+		 */
+		private boolean truncated;
+
+		/**
+		 * Amount of added lines of a truncated file, or {@code null} if the file was too large to compare.
+		 */
+		private Integer additions;
+
+		/**
+		 * Amount of removed lines of a truncated file, or {@code null} if the file was too large to compare.
+		 */
+		private Integer deletions;
+
 		protected int amountOfLinesWithType(final LineType type) {
 			return getContexts().stream()
 				.mapToInt(context -> context.amountOfLinesWithType(type))
@@ -74,6 +95,9 @@ public abstract class AbstractDiffModel<DF extends DiffFile> {
 		 */
 		@JsonIgnore
 		public int getLinesAdded() {
+			if (truncated) {
+				return additions == null ? 0 : additions;
+			}
 			return amountOfLinesWithType(LineType.ADDED);
 		}
 
@@ -82,6 +106,9 @@ public abstract class AbstractDiffModel<DF extends DiffFile> {
 		 */
 		@JsonIgnore
 		public int getLinesRemoved() {
+			if (truncated) {
+				return deletions == null ? 0 : deletions;
+			}
 			return amountOfLinesWithType(LineType.REMOVED);
 		}
 
@@ -1,11 +1,18 @@
 package nl.tudelft.ewi.git.models;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Preconditions;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * A {@link BlameModel} is the response for Git blame requests.
@@ -15,11 +22,25 @@ import lombok.Data;
  * @author Jan-Willem Gmelig Meyling
  */
 @Data
+@ToString(exclude = "index")
+@EqualsAndHashCode(exclude = "index")
 public class BlameModel {
 
 	private String path;
 	private String commitId;
 	private List<BlameBlock> blames;
+
+	/**
+	 * The blames sorted by destination line number, created on the first lookup.
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private transient volatile BlameBlock[] index;
+
+	public void setBlames(List<BlameBlock> blames) {
+		this.blames = blames;
+		this.index = null;
+	}
 	
 	/**
 	 * In {@link BlameBlock BlameBlocks} we aggregate adjacent lines from
@@ -80,15 +101,41 @@ public class BlameModel {
 	}
 
 	/**
+	 * Find the block for a line with a binary search. The blames should not be modified after the
+	 * first lookup.
+	 *
 	 * @param lineNumber the line number (starts at 1)
 	 * @return the BlameBlock for the line at given index
 	 */
-    public BlameBlock getBlameBlock(Integer lineNumber) {
-        for(BlameBlock block : blames) {
-            if(block.contains(lineNumber)) {
-                return block;
-            }
-        }
-        throw new IllegalArgumentException("Line " + lineNumber + " not in " + blames);
-    }
+	public BlameBlock getBlameBlock(Integer lineNumber) {
+		BlameBlock[] index = getIndex();
+		int low = 0;
+		int high = index.length - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			BlameBlock block = index[middle];
+			if (lineNumber < block.getDestinationFrom()) {
+				high = middle - 1;
+			}
+			else if (lineNumber >= block.getDestinationTo()) {
+				low = middle + 1;
+			}
+			else {
+				return block;
+			}
+		}
+
+		throw new IllegalArgumentException("Line " + lineNumber + " not in " + blames);
+	}
+
+	private BlameBlock[] getIndex() {
+		BlameBlock[] index = this.index;
+		if (index == null) {
+			index = blames.toArray(new BlameBlock[blames.size()]);
+			Arrays.sort(index, Comparator.comparingInt(BlameBlock::getDestinationFrom));
+			this.index = index;
+		}
+		return index;
+	}
 }
@@ -0,0 +1,234 @@
+package nl.tudelft.ewi.git.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.base.Joiner;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.CompactDiffModel.CompactDiffContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link DiffModel} in which every context is encoded as a {@link CompactDiffContext}. Instead of
+ * an object per line, a context holds the contents of all its lines in a single text block and the
+ * types of its lines as run lengths. The lines are only decoded when they are requested.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class CompactDiffModel extends AbstractDiffModel<DiffFile<CompactDiffContext>> {
+
+	/**
+	 * Encode a {@link DiffModel}.
+	 *
+	 * @param diffModel {@code DiffModel} to encode.
+	 * @return the {@code CompactDiffModel}.
+	 */
+	public static CompactDiffModel of(final DiffModel diffModel) {
+		CompactDiffModel compactDiffModel = new CompactDiffModel();
+		compactDiffModel.setNewCommit(diffModel.getNewCommit());
+		compactDiffModel.setOldCommit(diffModel.getOldCommit());
+		compactDiffModel.setCommits(diffModel.getCommits());
+		compactDiffModel.setCommitsCursor(diffModel.getCommitsCursor());
+		compactDiffModel.setDiffs(diffModel.getDiffs().stream()
+			.map(CompactDiffModel::encode)
+			.collect(Collectors.toList()));
+		return compactDiffModel;
+	}
+
+	/**
+	 * Encode a {@link DiffFile}.
+	 *
+	 * @param diffFile {@code DiffFile} to encode.
+	 * @return a {@code DiffFile} with {@link CompactDiffContext CompactDiffContexts}.
+	 */
+	public static DiffFile<CompactDiffContext> encode(final DiffFile<? extends DiffContext<? extends DiffLine>> diffFile) {
+		DiffFile<CompactDiffContext> compactDiffFile = new DiffFile<>();
+		compactDiffFile.setType(diffFile.getType());
+		compactDiffFile.setOldPath(diffFile.getOldPath());
+		compactDiffFile.setNewPath(diffFile.getNewPath());
+		compactDiffFile.setTruncated(diffFile.isTruncated());
+		compactDiffFile.setAdditions(diffFile.getAdditions());
+		compactDiffFile.setDeletions(diffFile.getDeletions());
+		if (diffFile.getContexts() != null) {
+			compactDiffFile.setContexts(diffFile.getContexts().stream()
+				.map(CompactDiffContext::of)
+				.collect(Collectors.toList()));
+		}
+		return compactDiffFile;
+	}
+
+	/**
+	 * A {@link DiffContext} that stores its lines in a compact form.
+	 *
+	 * The {@code runs} hold the amount of consecutive lines per type, in the repeating order
+	 * context, removed, added. For example, {@code [3, 1, 2, 3]} describes three context lines,
+	 * one removed line, two added lines and three context lines. The contents of the lines are
+	 * stored in {@code text}, separated by newlines. The line numbers follow from the line
+	 * numbers of the first old and new line.
+	 *
+	 * @author Jan-Willem Gmelig Meyling
+	 */
+	@Data
+	@NoArgsConstructor
+	@ToString(callSuper = false)
+	@EqualsAndHashCode(callSuper = false)
+	public static class CompactDiffContext extends DiffContext<DiffLine> {
+
+		private static final int CONTEXT = 0;
+		private static final int REMOVED = 1;
+		private static final int ADDED = 2;
+		private static final int TYPES = 3;
+
+		/**
+		 * Line number of the first line in the old file, or {@code 0} if the context has no lines in
+		 * the old file.
+		 */
+		private int oldStart;
+
+		/**
+		 * Line number of the first line in the new file, or {@code 0} if the context has no lines in
+		 * the new file.
+		 */
+		private int newStart;
+
+		/**
+		 * The contents of the lines, separated by newlines.
+		 */
+		private String text;
+
+		/**
+		 * The amount of consecutive lines per type.
+		 */
+		private int[] runs;
+
+		/**
+		 * Encode a {@link DiffContext}.
+		 *
+		 * @param context {@code DiffContext} to encode.
+		 * @return the {@code CompactDiffContext}.
+		 */
+		public static CompactDiffContext of(final DiffContext<? extends DiffLine> context) {
+			List<? extends DiffLine> lines = context.getLines();
+			CompactDiffContext compactDiffContext = new CompactDiffContext();
+			List<String> contents = new ArrayList<>(lines.size());
+			List<Integer> runs = new ArrayList<>();
+			boolean hasOldStart = false;
+			boolean hasNewStart = false;
+			int type = CONTEXT;
+			int count = 0;
+
+			for (DiffLine line : lines) {
+				if (line.getOldLineNumber() != null && !hasOldStart) {
+					compactDiffContext.oldStart = line.getOldLineNumber();
+					hasOldStart = true;
+				}
+				if (line.getNewLineNumber() != null && !hasNewStart) {
+					compactDiffContext.newStart = line.getNewLineNumber();
+					hasNewStart = true;
+				}
+
+				for (int lineType = typeOf(line); type % TYPES != lineType; type++) {
+					runs.add(count);
+					count = 0;
+				}
+
+				count++;
+				contents.add(line.getContent());
+			}
+
+			runs.add(count);
+			compactDiffContext.text = Joiner.on('\n').useForNull("").join(contents);
+			compactDiffContext.runs = runs.stream().mapToInt(Integer::intValue).toArray();
+			return compactDiffContext;
+		}
+
+		/**
+		 * @return the lines of this context, which are decoded the first time they are requested.
+		 */
+		@Override
+		@JsonIgnore
+		public List<DiffLine> getLines() {
+			List<DiffLine> lines = super.getLines();
+			if (lines == null) {
+				lines = decode();
+				setLines(lines);
+			}
+			return lines;
+		}
+
+		@Override
+		public int amountOfLinesWithType(final LineType type) {
+			int index;
+			switch (type) {
+				case CONTEXT:
+					index = CONTEXT;
+					break;
+				case REMOVED:
+					index = REMOVED;
+					break;
+				default:
+					index = ADDED;
+					break;
+			}
+
+			int amount = 0;
+			for (int i = index; i < runs.length; i += TYPES) {
+				amount += runs[i];
+			}
+			return amount;
+		}
+
+		private List<DiffLine> decode() {
+			int size = 0;
+			for (int run : runs) {
+				size += run;
+			}
+
+			List<DiffLine> lines = new ArrayList<>(size);
+			int oldLineNumber = oldStart;
+			int newLineNumber = newStart;
+			int start = 0;
+
+			for (int i = 0; i < runs.length; i++) {
+				for (int j = 0; j < runs[i]; j++) {
+					int end = text.indexOf('\n', start);
+					if (end < 0) {
+						end = text.length();
+					}
+					String content = text.substring(start, end);
+					start = end + 1;
+
+					switch (i % TYPES) {
+						case CONTEXT:
+							lines.add(new DiffLine(oldLineNumber++, newLineNumber++, content));
+							break;
+						case REMOVED:
+							lines.add(new DiffLine(oldLineNumber++, null, content));
+							break;
+						default:
+							lines.add(new DiffLine(null, newLineNumber++, content));
+							break;
+					}
+				}
+			}
+
+			return lines;
+		}
+
+		private static int typeOf(final DiffLine line) {
+			if (line.isUnchanged()) {
+				return CONTEXT;
+			}
+			return line.isRemoved() ? REMOVED : ADDED;
+		}
+
+	}
+
+}
@@ -0,0 +1,163 @@
+package nl.tudelft.ewi.git.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+
+/**
+ * Options for generating a diff. The options are passed as query parameters to the diff endpoints.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiffOptions {
+
+	/**
+	 * Default diff algorithm.
+	 */
+	public static final String DEFAULT_ALGORITHM = "MYERS";
+
+	/**
+	 * Default whitespace handling.
+	 */
+	public static final String DEFAULT_WHITESPACE = "NONE";
+
+	/**
+	 * Default maximum amount of added and deleted files for which renames are detected by content.
+	 */
+	public static final String DEFAULT_RENAME_LIMIT = "400";
+
+	/**
+	 * Default minimum similarity score, as a percentage, for two files to be considered a rename.
+	 */
+	public static final String DEFAULT_RENAME_SCORE = "60";
+
+	/**
+	 * Default detail of the commits between the compared commits.
+	 */
+	public static final String DEFAULT_COMMITS = "FULL";
+
+	/**
+	 * Algorithm used to compute the changed lines.
+	 */
+	@QueryParam("algorithm")
+	@DefaultValue(DEFAULT_ALGORITHM)
+	private Algorithm algorithm = Algorithm.MYERS;
+
+	/**
+	 * Whitespace changes to ignore when comparing lines.
+	 */
+	@QueryParam("whitespace")
+	@DefaultValue(DEFAULT_WHITESPACE)
+	private Whitespace whitespace = Whitespace.NONE;
+
+	/**
+	 * Whether to detect renamed and copied files.
+	 */
+	@QueryParam("renames")
+	@DefaultValue("true")
+	private boolean detectRenames = true;
+
+	/**
+	 * Renames are only detected by content if the amount of added files times the amount of deleted
+	 * files does not exceed the square of this limit. Files that are renamed without changes are
+	 * always detected.
+	 */
+	@QueryParam("rename-limit")
+	@DefaultValue(DEFAULT_RENAME_LIMIT)
+	private int renameLimit = Integer.parseInt(DEFAULT_RENAME_LIMIT);
+
+	/**
+	 * Minimum similarity score, as a percentage, for two files to be considered a rename.
+	 */
+	@QueryParam("rename-score")
+	@DefaultValue(DEFAULT_RENAME_SCORE)
+	private int renameScore = Integer.parseInt(DEFAULT_RENAME_SCORE);
+
+	/**
+	 * Detail of the commits between the compared commits.
+	 */
+	@QueryParam("commits")
+	@DefaultValue(DEFAULT_COMMITS)
+	private CommitDetail commits = CommitDetail.FULL;
+
+	/**
+	 * Maximum amount of commits between the compared commits to list, or {@code 0} to list all
+	 * commits. When there are more commits, the diff holds a cursor for the next page.
+	 */
+	@QueryParam("commits-limit")
+	@DefaultValue("0")
+	private int commitsLimit;
+
+	/**
+	 * Cursor of the page of commits to list: the id of the last commit of the previous page.
+	 */
+	@QueryParam("commits-after")
+	private String commitsAfter;
+
+	public DiffOptions(final Algorithm algorithm, final Whitespace whitespace) {
+		this.algorithm = algorithm;
+		this.whitespace = whitespace;
+	}
+
+	/**
+	 * Copy the options that affect the changed files. The options for the commit list are left
+	 * at their defaults, so that a copy can be used as key for the changed files.
+	 *
+	 * @param other {@code DiffOptions} to copy.
+	 */
+	public DiffOptions(final DiffOptions other) {
+		this(other.algorithm, other.whitespace);
+		this.detectRenames = other.detectRenames;
+		this.renameLimit = other.renameLimit;
+		this.renameScore = other.renameScore;
+	}
+
+	public enum Algorithm {
+
+		/** Myers' O(ND) difference algorithm */
+		MYERS,
+
+		/** Histogram diff, an extended form of patience diff */
+		HISTOGRAM;
+
+	}
+
+	public enum Whitespace {
+
+		/** Compare lines exactly */
+		NONE,
+
+		/** Ignore all whitespace */
+		IGNORE_ALL,
+
+		/** Ignore whitespace at the start of lines */
+		IGNORE_LEADING,
+
+		/** Ignore whitespace at the end of lines */
+		IGNORE_TRAILING,
+
+		/** Ignore changes in the amount of whitespace */
+		IGNORE_CHANGE;
+
+	}
+
+	public enum CommitDetail {
+
+		/** List the commits with their full messages */
+		FULL,
+
+		/** List the commits with only the first line of their messages */
+		SUMMARY,
+
+		/** Do not list the commits */
+		NONE;
+
+	}
+
+}
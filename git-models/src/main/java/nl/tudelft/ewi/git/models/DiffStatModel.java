@@ -0,0 +1,59 @@
+package nl.tudelft.ewi.git.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The amount of added and removed lines per changed file between two commits, without the
+ * lines themselves.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiffStatModel {
+
+	/**
+	 * The changed files between the commits.
+	 */
+	private List<DiffStatFile> files;
+
+	/**
+	 * Total amount of added lines.
+	 */
+	private int additions;
+
+	/**
+	 * Total amount of removed lines.
+	 */
+	private int deletions;
+
+	/**
+	 * The amount of added and removed lines in a single file.
+	 */
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class DiffStatFile {
+
+		private ChangeType type;
+		private String oldPath;
+		private String newPath;
+
+		/**
+		 * Amount of added lines, or {@code null} for binary files and files too large to compare.
+		 */
+		private Integer additions;
+
+		/**
+		 * Amount of removed lines, or {@code null} for binary files and files too large to compare.
+		 */
+		private Integer deletions;
+
+	}
+
+}
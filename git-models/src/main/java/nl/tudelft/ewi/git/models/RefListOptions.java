@@ -0,0 +1,62 @@
+package nl.tudelft.ewi.git.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.QueryParam;
+
+/**
+ * Options for listing branches or tags. The options are passed as query parameters to the listing
+ * endpoints.
+ *
+ * A listing is split into pages by setting a {@code limit}. The next page is requested by passing
+ * the name of the last branch or tag of a page as {@code after}. A page that holds fewer than
+ * {@code limit} refs is the last page.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefListOptions {
+
+	/**
+	 * Default order of the refs.
+	 */
+	public static final String DEFAULT_SORT = "NAME";
+
+	/**
+	 * Order of the refs.
+	 */
+	@QueryParam("sort")
+	@DefaultValue(DEFAULT_SORT)
+	private Sort sort = Sort.NAME;
+
+	/**
+	 * Maximum amount of refs to list, or {@code 0} to list all refs.
+	 */
+	@QueryParam("limit")
+	@DefaultValue("0")
+	private int limit;
+
+	/**
+	 * Full name of the last ref of the previous page, or {@code null} for the first page.
+	 */
+	@QueryParam("after")
+	private String after;
+
+	public enum Sort {
+		/**
+		 * By full ref name.
+		 */
+		NAME,
+		/**
+		 * By the commit time of the commit the ref points to, newest first. Refs with the same
+		 * commit time are ordered by name.
+		 */
+		COMMIT_TIME
+	}
+
+}
@@ -0,0 +1,105 @@
+package nl.tudelft.ewi.git.models;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import lombok.EqualsAndHashCode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The attributes to include in a {@link RepositoryModel} or {@link DetailedRepositoryModel}. Some of
+ * these, such as the branches with their ahead and behind counts, are expensive to compute, so a
+ * client can request only the attributes it uses. The name of the repository is always included.
+ *
+ * The fields are passed as a comma separated query parameter, for example
+ * {@code ?fields=url,branch-names}. An empty parameter includes only the name.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@EqualsAndHashCode
+public class RepositoryFields {
+
+	public enum Field {
+		/**
+		 * The clone url.
+		 */
+		URL,
+		/**
+		 * The permissions, which are read from the Gitolite config.
+		 */
+		PERMISSIONS,
+		/**
+		 * The branches, with their head commits and ahead and behind counts.
+		 */
+		BRANCHES,
+		/**
+		 * Only the names of the branches.
+		 */
+		BRANCH_NAMES,
+		/**
+		 * The tags, with their commits and descriptions.
+		 */
+		TAGS,
+		/**
+		 * Only the names of the tags.
+		 */
+		TAG_NAMES;
+
+		@Override
+		public String toString() {
+			return name().toLowerCase(Locale.ROOT).replace('_', '-');
+		}
+	}
+
+	/**
+	 * All attributes, which is the default when no fields are requested.
+	 */
+	public static final RepositoryFields ALL =
+		new RepositoryFields(EnumSet.of(Field.URL, Field.PERMISSIONS, Field.BRANCHES, Field.TAGS));
+
+	private final Set<Field> fields;
+
+	public RepositoryFields(Collection<Field> fields) {
+		this.fields = Collections.unmodifiableSet(fields.isEmpty() ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(fields));
+	}
+
+	/**
+	 * Parse the fields from a query parameter.
+	 *
+	 * @param value Comma separated fields.
+	 * @return the {@code RepositoryFields}.
+	 * @throws IllegalArgumentException If a field does not exist.
+	 */
+	public static RepositoryFields valueOf(String value) {
+		Set<Field> fields = EnumSet.noneOf(Field.class);
+		for (String field : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+			fields.add(Field.valueOf(field.toUpperCase(Locale.ROOT).replace('-', '_')));
+		}
+		return new RepositoryFields(fields);
+	}
+
+	/**
+	 * @param field Field to check.
+	 * @return true if the field is requested.
+	 */
+	public boolean contains(Field field) {
+		return fields.contains(field);
+	}
+
+	/**
+	 * @return the requested fields.
+	 */
+	public Set<Field> getFields() {
+		return fields;
+	}
+
+	@Override
+	public String toString() {
+		return Joiner.on(',').join(fields);
+	}
+
+}
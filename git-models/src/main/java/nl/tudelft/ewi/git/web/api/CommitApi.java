@@ -12,6 +12,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -30,6 +31,11 @@ public interface CommitApi extends DiffableApi {
 	 */
 	String EMPTY_PATH = "";
 
+	/**
+	 * Media type for newline delimited JSON.
+	 */
+	String JSON_LINES = "application/x-ndjson";
+
 	/**
 	 * @return fetch the model for the commit.
 	 */
@@ -46,6 +52,20 @@ public interface CommitApi extends DiffableApi {
 	@Path("blame/{path:.*}")
 	BlameModel blame(@PathParam("path") String filePath);
 
+	/**
+	 * Retrieve a blame result for a file, streaming the {@link BlameModel.BlameBlock BlameBlocks}
+	 * as they are attributed. Every line of the response holds a single block in JSON. The blocks
+	 * are not ordered by line number: the most recently changed lines are usually attributed first.
+	 *
+	 * @param filePath Path for the file to blame.
+	 * @return JSON lines response containing {@link BlameModel.BlameBlock BlameBlocks}.
+	 * @see #blame(String)
+	 */
+	@GET
+	@Path("blame-stream/{path:.*}")
+	@Produces(JSON_LINES)
+	Response blameStream(@PathParam("path") String filePath);
+
 	/**
 	 * Get the entries in the root folder.
 	 * @return  Entries in the folder.
@@ -69,12 +89,25 @@ public interface CommitApi extends DiffableApi {
 	 * Open a file from the repository.
 	 * @param path File path.
 	 * @return Stream for the file.
+	 * @see #downloadFile(String)
 	 */
 	@GET
 	@Path("file/{path:.*}")
 	@Produces(MediaType.APPLICATION_OCTET_STREAM)
 	InputStream showFile(@PathParam("path") String path);
 
+	/**
+	 * Download a file from the repository. The response carries the blob id as entity tag, and supports
+	 * conditional requests with {@code If-None-Match} and single byte ranges with {@code Range}.
+	 * @param path File path.
+	 * @return Response with a stream for the file, which can be read with
+	 *    {@code response.readEntity(InputStream.class)}.
+	 */
+	@GET
+	@Path("download/{path:.*}")
+	@Produces(MediaType.APPLICATION_OCTET_STREAM)
+	Response downloadFile(@PathParam("path") String path);
+
 	/**
 	 * Read a text file using the {@link Charsets#UTF_8 UTF-8} encoding.
 	 * @param path File path.
@@ -99,7 +132,9 @@ public interface CommitApi extends DiffableApi {
 	@Path("text-with-charset/{path:.*}")
 	@Produces(MediaType.TEXT_PLAIN)
 	default String showTextFile(@PathParam("path") String path, Charset charset) throws IOException {
-		return CharStreams.toString(new InputStreamReader(showFile(path), charset));
+		try (InputStream inputStream = showFile(path)) {
+			return CharStreams.toString(new InputStreamReader(inputStream, charset));
+		}
 	}
 
 }
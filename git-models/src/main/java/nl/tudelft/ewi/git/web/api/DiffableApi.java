@@ -1,9 +1,16 @@
 package nl.tudelft.ewi.git.web.api;
 
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel;
 import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffStatModel;
 
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -12,6 +19,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 /**
  * Both the {@link CommitApi} and {@link BranchApi} have diff endpoints.
@@ -37,12 +45,12 @@ public interface DiffableApi {
 	 *
 	 * @param oldCommitId Commit id to compare with.
 	 * @return {@link DiffModel}.
-	 * @see CommitApi#diff(String, int)
+	 * @see CommitApi#diff(String, int, DiffOptions)
 	 */
 	@GET
 	@Path("default/diff-default-context/{oldCommitId}")
 	default DiffModel diff(@PathParam("oldCommitId") @NotNull String oldCommitId) {
-		return diff(oldCommitId, DEFAULT_CONTEXT_AMOUNT);
+		return diff(oldCommitId, DEFAULT_CONTEXT_AMOUNT, new DiffOptions());
 	}
 
 	/**
@@ -50,24 +58,103 @@ public interface DiffableApi {
 	 *
 	 * @param oldCommitId Commit id to compare with.
 	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
 	 * @return {@link DiffModel}.
 	 */
 	@GET
 	@Path("diff/{oldCommitId}")
 	DiffModel diff(@PathParam("oldCommitId") @NotNull String oldCommitId,
-	               @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context);
+	               @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	               @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff for this commit.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param context Amount of context lines.
+	 * @return {@link DiffModel}.
+	 * @see #diff(String, int, DiffOptions)
+	 */
+	@GET
+	@Path("default/diff-default-options/{oldCommitId}")
+	default DiffModel diff(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                       @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context) {
+		return diff(oldCommitId, context, new DiffOptions());
+	}
+
+	/**
+	 * Generate a diff for this commit in the compact format. Every context holds the contents of its
+	 * lines in a single text block, which significantly reduces the size of large diffs.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return {@link CompactDiffModel}.
+	 * @see #diff(String, int, DiffOptions)
+	 */
+	@GET
+	@Path("diff-compact/{oldCommitId}")
+	CompactDiffModel diffCompact(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                             @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                             @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff for this commit, streaming the changed files as they are formatted. The body
+	 * of the response has the same format as {@link #diff(String, int, DiffOptions)}.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return JSON response containing a {@link DiffModel}.
+	 */
+	@GET
+	@Path("diff-stream/{oldCommitId}")
+	Response diffStream(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                    @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                    @BeanParam DiffOptions options);
+
+	/**
+	 * Count the added and removed lines per changed file in this commit, without the lines
+	 * themselves.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return {@link DiffStatModel}.
+	 */
+	@GET
+	@Path("diff-stat/{oldCommitId}")
+	DiffStatModel diffStat(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                       @BeanParam DiffOptions options);
+
+	/**
+	 * Generate the diff for a single file in this commit. Files that exceed the size limits for a
+	 * diff are {@link DiffFile#isTruncated() truncated} in the {@link DiffModel}. This endpoint
+	 * returns all lines for such a file.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param path Old or new path of the file.
+	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return the {@link DiffFile}.
+	 */
+	@GET
+	@Path("diff-file/{oldCommitId}")
+	DiffFile<DiffContext<DiffLine>> diffFile(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                                         @QueryParam("path") @NotNull String path,
+	                                         @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                                         @BeanParam DiffOptions options);
 
 	/**
 	 * Generate a diff with blame details.
 	 *
 	 * @param oldCommitId Commit id to compare with.
 	 * @return {@link DiffBlameModel}.
-	 * @see #diffBlame(String, int)
+	 * @see #diffBlame(String, int, DiffOptions)
 	 */
 	@GET
 	@Path("default/diff-blame-default-context/{oldCommitId}")
 	default DiffBlameModel diffBlame(@PathParam("oldCommitId") @NotNull String oldCommitId) {
-		return diffBlame(oldCommitId, DEFAULT_CONTEXT_AMOUNT);
+		return diffBlame(oldCommitId, DEFAULT_CONTEXT_AMOUNT, new DiffOptions());
 	}
 
 	/**
@@ -75,55 +162,182 @@ public interface DiffableApi {
 	 *
 	 * @param oldCommitId Commit id to compare with.
 	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
 	 * @return {@link DiffBlameModel}.
 	 */
 	@GET
 	@Path("diff-blame/{oldCommitId}")
 	DiffBlameModel diffBlame(@PathParam("oldCommitId") @NotNull String oldCommitId,
-	                         @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context);
+	                         @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                         @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff with blame details.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param context Amount of context lines.
+	 * @return {@link DiffBlameModel}.
+	 * @see #diffBlame(String, int, DiffOptions)
+	 */
+	@GET
+	@Path("default/diff-blame-default-options/{oldCommitId}")
+	default DiffBlameModel diffBlame(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                                 @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context) {
+		return diffBlame(oldCommitId, context, new DiffOptions());
+	}
+
+	/**
+	 * Generate a diff with blame details, as a stream. The body of the response has the same format
+	 * as {@link #diffBlame(String, int, DiffOptions)}. The blame stops when the client disconnects.
+	 *
+	 * @param oldCommitId Commit id to compare with.
+	 * @param context Amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return JSON response containing a {@link DiffBlameModel}.
+	 */
+	@GET
+	@Path("diff-blame-stream/{oldCommitId}")
+	Response diffBlameStream(@PathParam("oldCommitId") @NotNull String oldCommitId,
+	                         @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                         @BeanParam DiffOptions options);
 
 	/**
 	 * Generate a diff.
 	 *
 	 * @return a {@link DiffModel} for this diff with the default context size.
-	 * @see #diff(int)
+	 * @see #diff(int, DiffOptions)
 	 */
 	@GET
 	@Path("default/diff-default-context")
 	default DiffModel diff() {
-		return diff(DEFAULT_CONTEXT_AMOUNT);
+		return diff(DEFAULT_CONTEXT_AMOUNT, new DiffOptions());
 	}
 
 	/**
 	 * Generate a diff.
 	 *
 	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
 	 * @return a {@link DiffModel} for this diff.
 	 */
 	@GET
 	@Path("diff")
-	DiffModel diff(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context);
+	DiffModel diff(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	               @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff.
+	 *
+	 * @param context amount of context lines.
+	 * @return a {@link DiffModel} for this diff.
+	 * @see #diff(int, DiffOptions)
+	 */
+	@GET
+	@Path("default/diff-default-options")
+	default DiffModel diff(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context) {
+		return diff(context, new DiffOptions());
+	}
+
+	/**
+	 * Generate a diff in the compact format.
+	 *
+	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return {@link CompactDiffModel}.
+	 * @see #diff(int, DiffOptions)
+	 */
+	@GET
+	@Path("diff-compact")
+	CompactDiffModel diffCompact(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                             @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff, streaming the changed files as they are formatted. The body of the response
+	 * has the same format as {@link #diff(int, DiffOptions)}.
+	 *
+	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return JSON response containing a {@link DiffModel}.
+	 */
+	@GET
+	@Path("diff-stream")
+	Response diffStream(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                    @BeanParam DiffOptions options);
+
+	/**
+	 * Count the added and removed lines per changed file, without the lines themselves. This is
+	 * considerably cheaper than {@link #diff(int, DiffOptions)}.
+	 *
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return {@link DiffStatModel}.
+	 */
+	@GET
+	@Path("diff-stat")
+	DiffStatModel diffStat(@BeanParam DiffOptions options);
+
+	/**
+	 * Generate the diff for a single file, including all lines of files that are truncated in
+	 * {@link #diff(int, DiffOptions)}.
+	 *
+	 * @param path Old or new path of the file.
+	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return the {@link DiffFile}.
+	 */
+	@GET
+	@Path("diff-file")
+	DiffFile<DiffContext<DiffLine>> diffFile(@QueryParam("path") @NotNull String path,
+	                                         @DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                                         @BeanParam DiffOptions options);
 
 	/**
 	 * Generate a diff with blame details.
 	 *
 	 * @return a {@link DiffBlameModel} for this diff with the default context size.
-	 * @see #diffBlame(int)
+	 * @see #diffBlame(int, DiffOptions)
 	 */
 	@GET
 	@Path("default/diff-blame-default-context")
 	default DiffBlameModel diffBlame() {
-		return diffBlame(DEFAULT_CONTEXT_AMOUNT);
+		return diffBlame(DEFAULT_CONTEXT_AMOUNT, new DiffOptions());
 	}
 
 	/**
 	 * Generate a diff with blame details.
 	 *
 	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
 	 * @return a {@link DiffBlameModel} for this diff.
 	 */
 	@GET
 	@Path("diff-blame")
-	DiffBlameModel diffBlame(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context);
+	DiffBlameModel diffBlame(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                         @BeanParam DiffOptions options);
+
+	/**
+	 * Generate a diff with blame details.
+	 *
+	 * @param context amount of context lines.
+	 * @return a {@link DiffBlameModel} for this diff.
+	 * @see #diffBlame(int, DiffOptions)
+	 */
+	@GET
+	@Path("default/diff-blame-default-options")
+	default DiffBlameModel diffBlame(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context) {
+		return diffBlame(context, new DiffOptions());
+	}
+
+	/**
+	 * Generate a diff with blame details, as a stream. The body of the response has the same format
+	 * as {@link #diffBlame(int, DiffOptions)}. The blame stops when the client disconnects.
+	 *
+	 * @param context amount of context lines.
+	 * @param options {@link DiffOptions} for the diff.
+	 * @return JSON response containing a {@link DiffBlameModel}.
+	 */
+	@GET
+	@Path("diff-blame-stream")
+	Response diffBlameStream(@DefaultValue(DEFAULT_CONTEXT_AMOUNT_STR) @QueryParam("context") int context,
+	                         @BeanParam DiffOptions options);
 
 }
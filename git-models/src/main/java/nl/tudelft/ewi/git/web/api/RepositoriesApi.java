@@ -2,6 +2,7 @@ package nl.tudelft.ewi.git.web.api;
 
 import nl.tudelft.ewi.git.models.CreateRepositoryModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
+import nl.tudelft.ewi.git.models.RepositoryFields;
 import nl.tudelft.ewi.git.models.RepositoryModel;
 
 import javax.validation.Valid;
@@ -12,6 +13,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import java.util.Collection;
 
@@ -28,9 +30,23 @@ public interface RepositoriesApi {
 	 * List all repositories.
 	 *
 	 * @return a collection of repositories.
+	 * @see #listAllRepositories(RepositoryFields)
 	 */
 	@GET
-	Collection<RepositoryModel> listAllRepositories();
+	@Path("default/list-all-repositories")
+	default Collection<RepositoryModel> listAllRepositories() {
+		return listAllRepositories(null);
+	}
+
+	/**
+	 * List all repositories with only the requested attributes. Branches and tags are not
+	 * included in this listing.
+	 *
+	 * @param fields The attributes to include, or {@code null} for the url and permissions.
+	 * @return a collection of repositories.
+	 */
+	@GET
+	Collection<RepositoryModel> listAllRepositories(@QueryParam("fields") RepositoryFields fields);
 
 	/**
 	 * Get a specific repository.
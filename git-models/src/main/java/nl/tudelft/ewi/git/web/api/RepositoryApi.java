@@ -2,11 +2,14 @@ package nl.tudelft.ewi.git.web.api;
 
 import nl.tudelft.ewi.git.models.BranchModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
+import nl.tudelft.ewi.git.models.RefListOptions;
+import nl.tudelft.ewi.git.models.RepositoryFields;
 import nl.tudelft.ewi.git.models.RepositoryModel;
 import nl.tudelft.ewi.git.models.TagModel;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -15,6 +18,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import java.util.Collection;
 
@@ -30,9 +34,21 @@ public interface RepositoryApi extends CommitsApi {
 	/**
 	 * Get the repository model.
 	 * @return The {@link DetailedRepositoryModel}.
+	 * @see #getRepositoryModel(RepositoryFields)
 	 */
 	@GET
-	DetailedRepositoryModel getRepositoryModel();
+	@Path("default/repository-model")
+	default DetailedRepositoryModel getRepositoryModel() {
+		return getRepositoryModel(null);
+	}
+
+	/**
+	 * Get the repository model with only the requested attributes.
+	 * @param fields The attributes to include, or {@code null} for {@link RepositoryFields#ALL}.
+	 * @return The {@link DetailedRepositoryModel}.
+	 */
+	@GET
+	DetailedRepositoryModel getRepositoryModel(@QueryParam("fields") RepositoryFields fields);
 
 	/**
 	 * Update the repositories permissions.
@@ -54,18 +70,42 @@ public interface RepositoryApi extends CommitsApi {
 	/**
 	 * List the tags.
 	 * @return A collection of tags.
+	 * @see #getTags(RefListOptions)
+	 */
+	@GET
+	@Path("default/tags")
+	default Collection<TagModel> getTags() {
+		return getTags(new RefListOptions());
+	}
+
+	/**
+	 * List a page of the tags.
+	 * @param options {@link RefListOptions} for the order and page of the tags.
+	 * @return A collection of tags.
 	 */
 	@GET
 	@Path("tags")
-	Collection<TagModel> getTags();
+	Collection<TagModel> getTags(@BeanParam RefListOptions options);
 
 	/**
 	 * List the branches.
 	 * @return A collection of branches.
+	 * @see #getBranches(RefListOptions)
+	 */
+	@GET
+	@Path("default/branches")
+	default Collection<BranchModel> getBranches() {
+		return getBranches(new RefListOptions());
+	}
+
+	/**
+	 * List a page of the branches.
+	 * @param options {@link RefListOptions} for the order and page of the branches.
+	 * @return A collection of branches.
 	 */
 	@GET
 	@Path("branches")
-	Collection<BranchModel> getBranches();
+	Collection<BranchModel> getBranches(@BeanParam RefListOptions options);
 
 	/**
 	 * Get a branch.
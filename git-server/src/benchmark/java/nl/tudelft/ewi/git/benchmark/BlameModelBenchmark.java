@@ -0,0 +1,87 @@
+package nl.tudelft.ewi.git.benchmark;
+
+import com.google.common.collect.Lists;
+import nl.tudelft.ewi.git.models.BlameModel;
+import nl.tudelft.ewi.git.models.BlameModel.BlameBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time it takes to look up the {@link BlameBlock} of every line of a large file, as is
+ * done for every line of a diff-blame, with a linear scan over the blocks.
+ *
+ * Run with {@code mvn -Pbenchmark -pl git-server verify}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class BlameModelBenchmark {
+
+	@Param({"1000", "10000"})
+	private int lines;
+
+	private BlameModel blameModel;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(lines);
+		List<BlameBlock> blames = Lists.newArrayList();
+
+		for (int lineNumber = 1; lineNumber <= lines; ) {
+			BlameBlock block = new BlameBlock();
+			block.setDestinationFrom(lineNumber);
+			block.setSourceFrom(lineNumber);
+			block.setLength(Math.min(1 + random.nextInt(5), lines - lineNumber + 1));
+			block.setFromCommitId(Integer.toHexString(random.nextInt(100)));
+			block.setFromFilePath("file.txt");
+			blames.add(block);
+			lineNumber += block.getLength();
+		}
+
+		blameModel = new BlameModel();
+		blameModel.setBlames(blames);
+	}
+
+	@Benchmark
+	public void binarySearch(Blackhole blackhole) {
+		for (int lineNumber = 1; lineNumber <= lines; lineNumber++) {
+			blackhole.consume(blameModel.getBlameBlock(lineNumber));
+		}
+	}
+
+	@Benchmark
+	public void linearScan(Blackhole blackhole) {
+		for (int lineNumber = 1; lineNumber <= lines; lineNumber++) {
+			blackhole.consume(scan(lineNumber));
+		}
+	}
+
+	private BlameBlock scan(int lineNumber) {
+		for (BlameBlock block : blameModel.getBlames()) {
+			if (block.contains(lineNumber)) {
+				return block;
+			}
+		}
+		throw new IllegalArgumentException("Line " + lineNumber + " not in " + blameModel.getBlames());
+	}
+
+}
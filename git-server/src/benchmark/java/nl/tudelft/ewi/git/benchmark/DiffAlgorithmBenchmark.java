@@ -0,0 +1,120 @@
+package nl.tudelft.ewi.git.benchmark;
+
+import com.google.common.collect.Lists;
+import nl.tudelft.ewi.git.inspector.DiffContextFormatter;
+import nl.tudelft.ewi.git.inspector.DiffSession;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time it takes to format the diffs of the history of a repository with each
+ * {@link DiffOptions.Algorithm} and {@link DiffOptions.Whitespace} option. The repository defaults
+ * to the repository of this project, and can be set with {@code -p repository=<git dir>}.
+ *
+ * Run with {@code mvn -Pbenchmark -pl git-server verify}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DiffAlgorithmBenchmark {
+
+	@Param({"../.git"})
+	private String repository;
+
+	@Param({"200"})
+	private int commits;
+
+	@Param({"MYERS", "HISTOGRAM"})
+	private DiffOptions.Algorithm algorithm;
+
+	@Param({"NONE", "IGNORE_ALL", "IGNORE_LEADING", "IGNORE_TRAILING", "IGNORE_CHANGE"})
+	private DiffOptions.Whitespace whitespace;
+
+	private Repository gitRepository;
+	private List<RevCommit> history;
+
+	@Setup
+	public void setUp() throws IOException {
+		File gitDir = new File(repository);
+		gitRepository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+
+		history = Lists.newArrayList();
+		try (RevWalk walk = new RevWalk(gitRepository)) {
+			walk.markStart(walk.parseCommit(gitRepository.resolve("HEAD")));
+			for (RevCommit commit : walk) {
+				if (commit.getParentCount() == 1) {
+					history.add(commit);
+				}
+				if (history.size() >= commits) {
+					break;
+				}
+			}
+			for (RevCommit commit : history) {
+				walk.parseHeaders(commit.getParent(0));
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		gitRepository.close();
+	}
+
+	@Benchmark
+	public long formatDiffs() throws IOException {
+		long changedLines = 0;
+		try (DiffSession session = new DiffSession(gitRepository, DiffSession.DEFAULT_CONTEXT,
+				new DiffOptions(algorithm, whitespace))) {
+			for (RevCommit commit : history) {
+				for (DiffEntry diffEntry : scan(session, commit)) {
+					DiffFile<DiffContext<DiffLine>> diffFile = new DiffFile<>();
+					new DiffContextFormatter(diffFile, session).format(diffEntry);
+					changedLines += diffFile.getLinesAdded() + diffFile.getLinesRemoved();
+				}
+			}
+		}
+		return changedLines;
+	}
+
+	private static List<DiffEntry> scan(DiffSession session, RevCommit commit) throws IOException {
+		try (TreeWalk treeWalk = new TreeWalk(session.getReader())) {
+			treeWalk.addTree(commit.getParent(0).getTree());
+			treeWalk.addTree(commit.getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			return DiffEntry.scan(treeWalk);
+		}
+	}
+
+}
@@ -59,4 +59,103 @@ public class Config {
 	public String getGitoliteAdmin() {
 		return properties.getProperty("gitolite.administrator", "git");
 	}
+
+	public int getMaxOpenRepositories() {
+		return Integer.parseInt(properties.getProperty("repositories.max-open", "256"));
+	}
+
+	public int getRepositoryIdleTimeout() {
+		return Integer.parseInt(properties.getProperty("repositories.idle-timeout", "300"));
+	}
+
+	public int getPackedGitOpenFiles() {
+		return Integer.parseInt(properties.getProperty("repositories.pack-open-files", "128"));
+	}
+
+	public int getCommitModelCacheSize() {
+		return Integer.parseInt(properties.getProperty("cache.commit-models", "10000"));
+	}
+
+	public int getBlameCacheSize() {
+		return Integer.parseInt(properties.getProperty("cache.blames", "1000"));
+	}
+
+	public int getDiffStatCacheSize() {
+		return Integer.parseInt(properties.getProperty("cache.diff-stats", "10000"));
+	}
+
+	public int getRenameCacheSize() {
+		return Integer.parseInt(properties.getProperty("cache.renames", "10000"));
+	}
+
+	public int getEntryTypeCacheSize() {
+		return Integer.parseInt(properties.getProperty("cache.entry-types", "100000"));
+	}
+
+	public int getDiffThreads() {
+		String threads = Integer.toString(Runtime.getRuntime().availableProcessors());
+		return Integer.parseInt(properties.getProperty("diffs.threads", threads));
+	}
+
+	public int getDiffQueueSize() {
+		return Integer.parseInt(properties.getProperty("diffs.queue-size", "256"));
+	}
+
+	public int getDiffRequestParallelism() {
+		return Integer.parseInt(properties.getProperty("diffs.request-parallelism", "4"));
+	}
+
+	public int getBlameThreads() {
+		String threads = Integer.toString(Runtime.getRuntime().availableProcessors());
+		return Integer.parseInt(properties.getProperty("blames.threads", threads));
+	}
+
+	public int getBlameQueueSize() {
+		return Integer.parseInt(properties.getProperty("blames.queue-size", "256"));
+	}
+
+	public int getBlameRequestParallelism() {
+		return Integer.parseInt(properties.getProperty("blames.request-parallelism", "4"));
+	}
+
+	public long getRenameTimeout() {
+		return Long.parseLong(properties.getProperty("diffs.rename-timeout", "1000"));
+	}
+
+	public int getDiffFileLineLimit() {
+		return Integer.parseInt(properties.getProperty("diffs.file-line-limit", "5000"));
+	}
+
+	public int getDiffFileByteLimit() {
+		return Integer.parseInt(properties.getProperty("diffs.file-byte-limit", "1048576"));
+	}
+
+	public int getDiffLineBudget() {
+		return Integer.parseInt(properties.getProperty("diffs.line-budget", "50000"));
+	}
+
+	public long getDiffCacheMemorySize() {
+		return Long.parseLong(properties.getProperty("cache.diffs.memory-size", "67108864"));
+	}
+
+	public long getDiffCacheDiskSize() {
+		return Long.parseLong(properties.getProperty("cache.diffs.disk-size", "1073741824"));
+	}
+
+	public File getDiffCacheDirectory() {
+		String path = properties.getProperty("cache.diffs.directory");
+		if (Strings.isNullOrEmpty(path)) {
+			return new File(System.getProperty("java.io.tmpdir"), "git-server-diffs");
+		}
+		return new File(path);
+	}
+
+	public File getCommitCountDirectory() {
+		String path = properties.getProperty("cache.commit-counts.directory");
+		if (Strings.isNullOrEmpty(path)) {
+			return new File(System.getProperty("java.io.tmpdir"), "git-server-commit-counts");
+		}
+		return new File(path);
+	}
+
 }
@@ -12,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.eclipse.jgit.transport.SshSessionFactory;
@@ -56,6 +57,11 @@ public class GitServer {
 
 		Config config = new Config();
 		config.reload();
+
+		// The window cache is shared by all repositories in the process, so configure it only once
+		WindowCacheConfig windowCacheConfig = new WindowCacheConfig();
+		windowCacheConfig.setPackedGitOpenFiles(config.getPackedGitOpenFiles());
+		windowCacheConfig.install();
 		
 		GitServer server = new GitServer(config);
 		server.start();
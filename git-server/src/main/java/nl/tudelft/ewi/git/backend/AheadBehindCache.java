@@ -0,0 +1,147 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+
+import java.io.IOException;
+/**
+ * Cache for the amount of commits a branch is ahead and behind of master, keyed by the branch tip
+ * and the master tip. When only one of the tips moved forward since the last time a branch was
+ * inspected, the counts are updated by walking just the new commits.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+class AheadBehindCache {
+
+	private static final int MAXIMUM_SIZE = 4096;
+
+	private final Cache<Tips, Counts> counts = CacheBuilder.newBuilder()
+		.maximumSize(MAXIMUM_SIZE)
+		.build();
+
+	/*
+	 * The tips a branch was last inspected at. Bounded as well, so that deleted and one-off branches
+	 * do not accumulate.
+	 */
+	private final Cache<String, Tips> lastTips = CacheBuilder.newBuilder()
+		.maximumSize(MAXIMUM_SIZE)
+		.build();
+
+	/**
+	 * Get the amount of commits a branch is ahead and behind of master.
+	 *
+	 * @param walk RevWalk to use, the walk is reset.
+	 * @param branchName Name of the branch.
+	 * @param branchTip Current commit for the branch.
+	 * @param masterTip Current commit for master.
+	 * @return the {@link Counts}.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public Counts get(RevWalk walk, String branchName, RevCommit branchTip, RevCommit masterTip) throws IOException {
+		Tips tips = new Tips(branchTip.copy(), masterTip.copy());
+		Counts result = counts.getIfPresent(tips);
+
+		if (result == null) {
+			Tips previous = lastTips.getIfPresent(branchName);
+			Counts previousCounts = previous != null ? counts.getIfPresent(previous) : null;
+
+			if (previousCounts != null) {
+				result = update(walk, previous, previousCounts, branchTip, masterTip);
+			}
+
+			if (result == null) {
+				result = compute(walk, branchTip, masterTip);
+			}
+
+			counts.put(tips, result);
+		}
+
+		lastTips.put(branchName, tips);
+		return result;
+	}
+
+	private static Counts compute(RevWalk walk, RevCommit branchTip, RevCommit masterTip) throws IOException {
+		int ahead = count(walk, branchTip, masterTip);
+		int behind = count(walk, masterTip, branchTip);
+		return new Counts(ahead, behind);
+	}
+
+	/*
+	 * If one tip moved forward, the commits reachable from the new tip are the commits reachable
+	 * from the old tip plus the new commits. Only the new commits have to be walked to determine
+	 * how the counts changed. Returns null if the counts cannot be updated incrementally.
+	 */
+	private static Counts update(RevWalk walk, Tips previous, Counts previousCounts,
+	                             RevCommit branchTip, RevCommit masterTip) throws IOException {
+		try {
+			if (previous.getMaster().equals(masterTip)) {
+				RevCommit previousBranchTip = walk.parseCommit(previous.getBranch());
+				if (isAncestor(walk, previousBranchTip, branchTip)) {
+					int added = count(walk, branchTip, previousBranchTip);
+					int addedNotInMaster = count(walk, branchTip, previousBranchTip, masterTip);
+					return new Counts(previousCounts.getAhead() + addedNotInMaster,
+						previousCounts.getBehind() - (added - addedNotInMaster));
+				}
+			}
+			else if (previous.getBranch().equals(branchTip)) {
+				RevCommit previousMasterTip = walk.parseCommit(previous.getMaster());
+				if (isAncestor(walk, previousMasterTip, masterTip)) {
+					int added = count(walk, masterTip, previousMasterTip);
+					int addedNotInBranch = count(walk, masterTip, previousMasterTip, branchTip);
+					return new Counts(previousCounts.getAhead() - (added - addedNotInBranch),
+						previousCounts.getBehind() + addedNotInBranch);
+				}
+			}
+		}
+		catch (MissingObjectException e) {
+			// The previous tip no longer exists, for example after a forced push and gc
+		}
+		return null;
+	}
+
+	private static boolean isAncestor(RevWalk walk, RevCommit ancestor, RevCommit commit) throws IOException {
+		walk.reset();
+		walk.setRevFilter(RevFilter.MERGE_BASE);
+		walk.markStart(ancestor);
+		walk.markStart(commit);
+		RevCommit mergeBase = walk.next();
+		return ancestor.equals(mergeBase);
+	}
+
+	private static int count(RevWalk walk, RevCommit start, RevCommit... uninteresting) throws IOException {
+		walk.reset();
+		walk.setRevFilter(RevFilter.ALL);
+		walk.markStart(start);
+		for (RevCommit commit : uninteresting) {
+			walk.markUninteresting(commit);
+		}
+
+		int count = 0;
+		while (walk.next() != null) {
+			count++;
+		}
+		return count;
+	}
+
+	@Value
+	private static class Tips {
+		ObjectId branch;
+		ObjectId master;
+	}
+
+	/**
+	 * Amount of commits a branch is ahead and behind.
+	 */
+	@Value
+	static class Counts {
+		int ahead;
+		int behind;
+	}
+
+}
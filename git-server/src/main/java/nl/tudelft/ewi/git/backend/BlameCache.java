@@ -0,0 +1,108 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.RangeSet;
+import lombok.Value;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.BlameModel;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Cache for {@link BlameModel BlameModels}, keyed by commit and path. The blame for a file only
+ * depends on the history of the commit, so the models can be shared between requests and between
+ * repositories that share history.
+ *
+ * The blame for a file does not change until the file is modified. Models are therefore also
+ * stored under the commit that last modified the file, so that they can be reused for every
+ * later commit in which the file is unchanged.
+ *
+ * The blame of only some lines of a file is stored separately, keyed by the requested lines as
+ * well, because it holds no blame for the other lines.
+ *
+ * Because the cache is shared, a commit id must be known to exist in the repository of a request
+ * before its blame is looked up. Otherwise a repository could read the history of another repository.
+ *
+ * The cached models are shared, and thus should not be modified.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class BlameCache {
+
+	private final Cache<Key, BlameModel> cache;
+
+	@Inject
+	public BlameCache(Config config) {
+		this.cache = CacheBuilder.newBuilder()
+			.maximumSize(config.getBlameCacheSize())
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * @param commitId Commit id for the commit.
+	 * @param path Path of the file.
+	 * @return The cached {@link BlameModel}, or null if the blame is not in the cache.
+	 */
+	public BlameModel getIfPresent(AnyObjectId commitId, String path) {
+		return cache.getIfPresent(new Key(commitId.copy(), path, null));
+	}
+
+	/**
+	 * @param commitId Commit id for the commit.
+	 * @param path Path of the file.
+	 * @param lines The blamed lines.
+	 * @return The cached {@link BlameModel} for the lines, or null if the blame is not in the cache.
+	 */
+	public BlameModel getIfPresent(AnyObjectId commitId, String path, RangeSet<Integer> lines) {
+		return cache.getIfPresent(new Key(commitId.copy(), path, ImmutableRangeSet.copyOf(lines)));
+	}
+
+	/**
+	 * Store the blame for a file.
+	 *
+	 * @param commitId Commit id for the commit.
+	 * @param path Path of the file.
+	 * @param blameModel The {@link BlameModel}.
+	 */
+	public void put(AnyObjectId commitId, String path, BlameModel blameModel) {
+		cache.put(new Key(commitId.copy(), path, null), blameModel);
+	}
+
+	/**
+	 * Store the blame for some lines of a file.
+	 *
+	 * @param commitId Commit id for the commit.
+	 * @param path Path of the file.
+	 * @param lines The blamed lines.
+	 * @param blameModel The {@link BlameModel} for the lines.
+	 */
+	public void put(AnyObjectId commitId, String path, RangeSet<Integer> lines, BlameModel blameModel) {
+		cache.put(new Key(commitId.copy(), path, ImmutableRangeSet.copyOf(lines)), blameModel);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the cache.
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	@Value
+	private static class Key {
+		ObjectId commitId;
+		String path;
+		/**
+		 * The blamed lines, or null for the whole file.
+		 */
+		ImmutableRangeSet<Integer> lines;
+	}
+
+}
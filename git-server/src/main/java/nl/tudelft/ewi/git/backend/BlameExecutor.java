@@ -0,0 +1,23 @@
+package nl.tudelft.ewi.git.backend;
+
+import nl.tudelft.ewi.git.Config;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Bounded executor for blaming the files in a diff in parallel. Blame is blocking I/O, so it runs
+ * on its own threads instead of the common {@code ForkJoinPool}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class BlameExecutor extends BoundedExecutor {
+
+	@Inject
+	public BlameExecutor(Config config) {
+		super("blame-%d", config.getBlameThreads(), config.getBlameQueueSize(),
+			config.getBlameRequestParallelism());
+	}
+
+}
@@ -0,0 +1,274 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.gitolite.git.GitException;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded executor for applying a function to a list of inputs in parallel. A single request uses
+ * at most {@link #getParallelism()} threads, one of which is the requesting thread itself. When the
+ * executor is saturated, the requesting thread transforms the remaining inputs, so a large request
+ * can not starve other requests.
+ *
+ * A request can be cancelled, for example when its client has disconnected. Inputs that are not
+ * being transformed yet are then skipped.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Slf4j
+public class BoundedExecutor {
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static final AutoCloseable NO_SESSION = () -> {};
+
+	private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Maximum amount of threads used for a single request.
+	 */
+	@Getter
+	private final int parallelism;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	/**
+	 * @param nameFormat Name format for the threads of the executor.
+	 * @param threads Amount of threads shared by all requests.
+	 * @param queueSize Amount of tasks that may wait for a thread.
+	 * @param parallelism Maximum amount of threads used for a single request.
+	 */
+	public BoundedExecutor(String nameFormat, int threads, int queueSize, int parallelism) {
+		this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(queueSize),
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+		this.executor.allowCoreThreadTimeOut(true);
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Apply a function to every input. The results are in the same order as the inputs.
+	 *
+	 * @param inputs Inputs to transform.
+	 * @param function Function to apply.
+	 * @param cancelled Whether the request is cancelled. Checked before every input, on any thread.
+	 * @param <T> Type of the inputs.
+	 * @param <R> Type of the results.
+	 * @return the results.
+	 * @throws CancellationException If the request was cancelled, or the requesting thread was
+	 *    interrupted, before all inputs were transformed.
+	 */
+	public <T, R> List<R> map(List<T> inputs, Function<T, R> function, BooleanSupplier cancelled) {
+		return map(NO_SESSION, session -> session, inputs, (session, input) -> function.apply(input), cancelled);
+	}
+
+	/**
+	 * Apply a function to every input, with a session per thread. The requesting thread uses the
+	 * given session. Other threads use a fork of the session, which is closed when they are done.
+	 *
+	 * @param session Session for the requesting thread.
+	 * @param fork Function to fork the session for another thread.
+	 * @param inputs Inputs to transform.
+	 * @param function Function to apply.
+	 * @param <S> Type of the session.
+	 * @param <T> Type of the inputs.
+	 * @param <R> Type of the results.
+	 * @return the results.
+	 * @throws CancellationException If the requesting thread was interrupted before all inputs were
+	 *    transformed.
+	 */
+	public <S extends AutoCloseable, T, R> List<R> map(S session, UnaryOperator<S> fork, List<T> inputs,
+	                                                   BiFunction<S, T, R> function) {
+		return map(session, fork, inputs, function, NOT_CANCELLED);
+	}
+
+	/**
+	 * Apply a function to every input, with a session per thread, until the request is cancelled.
+	 *
+	 * @param session Session for the requesting thread.
+	 * @param fork Function to fork the session for another thread.
+	 * @param inputs Inputs to transform.
+	 * @param function Function to apply.
+	 * @param cancelled Whether the request is cancelled. Checked before every input, on any thread.
+	 * @param <S> Type of the session.
+	 * @param <T> Type of the inputs.
+	 * @param <R> Type of the results.
+	 * @return the results.
+	 * @throws CancellationException If the request was cancelled, or the requesting thread was
+	 *    interrupted, before all inputs were transformed.
+	 * @see #map(AutoCloseable, UnaryOperator, List, BiFunction)
+	 */
+	public <S extends AutoCloseable, T, R> List<R> map(S session, UnaryOperator<S> fork, List<T> inputs,
+	                                                   BiFunction<S, T, R> function, BooleanSupplier cancelled) {
+		Batch<S, T, R> batch = new Batch<>(inputs, function, cancelled);
+		List<Future<?>> helpers = Lists.newArrayList();
+
+		try {
+			for (int i = 1; i < Math.min(parallelism, inputs.size()); i++) {
+				helpers.add(executor.submit(() -> batch.help(session, fork)));
+			}
+		}
+		catch (RejectedExecutionException e) {
+			rejectedCount.incrementAndGet();
+			log.debug("Executor is saturated, continuing on the request thread");
+		}
+
+		batch.work(session);
+
+		try {
+			batch.await();
+		}
+		catch (InterruptedException e) {
+			batch.cancel();
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			// Helpers that did not start yet have nothing left to do
+			helpers.forEach(future -> future.cancel(false));
+		}
+
+		if (batch.isCancelled()) {
+			cancelledCount.incrementAndGet();
+			throw new CancellationException("Request was cancelled");
+		}
+
+		return batch.getResults();
+	}
+
+	/**
+	 * @return the queue depth, active threads, and rejected and cancelled requests of the executor.
+	 */
+	public Statistics getStatistics() {
+		return new Statistics(executor.getQueue().size(), executor.getActiveCount(),
+			rejectedCount.get(), cancelledCount.get());
+	}
+
+	@Value
+	public static class Statistics {
+		/**
+		 * The amount of tasks waiting for a thread.
+		 */
+		int queueSize;
+		/**
+		 * The amount of threads that are running a task.
+		 */
+		int activeCount;
+		/**
+		 * The amount of requests that could not use all their threads because the executor was saturated.
+		 */
+		long rejectedCount;
+		/**
+		 * The amount of requests that were cancelled.
+		 */
+		long cancelledCount;
+	}
+
+	private static class Batch<S extends AutoCloseable, T, R> {
+
+		private final List<T> inputs;
+		private final BiFunction<S, T, R> function;
+		private final BooleanSupplier cancelledSupplier;
+		private final AtomicReferenceArray<R> results;
+		private final AtomicInteger next = new AtomicInteger();
+		private final CountDownLatch remaining;
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private volatile boolean cancelled;
+
+		Batch(List<T> inputs, BiFunction<S, T, R> function, BooleanSupplier cancelledSupplier) {
+			this.inputs = inputs;
+			this.function = function;
+			this.cancelledSupplier = cancelledSupplier;
+			this.results = new AtomicReferenceArray<>(inputs.size());
+			this.remaining = new CountDownLatch(inputs.size());
+		}
+
+		void help(S session, UnaryOperator<S> fork) {
+			if (next.get() >= inputs.size()) {
+				return;
+			}
+
+			try (S forked = fork.apply(session)) {
+				work(forked);
+			}
+			catch (Exception e) {
+				// Forking or closing the session failed. The inputs this helper claimed are counted down
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		void work(S session) {
+			for (int i = next.getAndIncrement(); i < inputs.size(); i = next.getAndIncrement()) {
+				try {
+					if (!isCancelled()) {
+						results.set(i, function.apply(session, inputs.get(i)));
+					}
+				}
+				catch (RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				}
+				finally {
+					remaining.countDown();
+				}
+			}
+		}
+
+		boolean isCancelled() {
+			if (!cancelled && cancelledSupplier.getAsBoolean()) {
+				cancelled = true;
+			}
+			return cancelled;
+		}
+
+		void cancel() {
+			cancelled = true;
+		}
+
+		void await() throws InterruptedException {
+			remaining.await();
+			Throwable e = failure.get();
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			if (e != null) {
+				throw new GitException((Exception) e);
+			}
+		}
+
+		List<R> getResults() {
+			List<R> list = Lists.newArrayListWithCapacity(results.length());
+			for (int i = 0; i < results.length(); i++) {
+				list.add(results.get(i));
+			}
+			return list;
+		}
+
+	}
+
+}
@@ -0,0 +1,211 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.NB;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Index that stores the amount of commits reachable from a commit (including the commit itself).
+ * Because commits are immutable, so is the amount of commits reachable from them. Counts are
+ * derived from the count of the first parent, so only commits that are not yet indexed are walked.
+ *
+ * The index is persisted in an append-only file in the data directory of the server, so it survives
+ * restarts of the server. The file starts with a header that identifies its format, followed by
+ * fixed length records. A record that was only partially written is truncated when the file is
+ * opened, so that the records that are appended after it stay aligned.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Slf4j
+class CommitCountIndex {
+
+	private static final byte[] HEADER = { 'G', 'S', 'C', 'C', 0, 0, 0, 1 };
+
+	private static final int RECORD_LENGTH = Constants.OBJECT_ID_LENGTH + 4;
+
+	private final Repository repo;
+	private final File file;
+	private final Map<ObjectId, Integer> counts = Maps.newConcurrentMap();
+	private volatile boolean loaded = false;
+
+	CommitCountIndex(Repository repo, File file) {
+		this.repo = repo;
+		this.file = file;
+	}
+
+	/**
+	 * Get the amount of commits reachable from a commit.
+	 *
+	 * @param commitId Commit id for the commit.
+	 * @return the amount of commits reachable from the commit, including the commit itself.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public int getCount(AnyObjectId commitId) throws IOException {
+		load();
+
+		Integer count = counts.get(commitId);
+		if (count != null) {
+			return count;
+		}
+
+		try (RevWalk walk = new RevWalk(repo)) {
+			walk.setRetainBody(false);
+
+			// Follow the first parents until we find an indexed commit
+			Deque<RevCommit> unindexed = new ArrayDeque<>();
+			RevCommit current = walk.parseCommit(commitId);
+			while (current != null && !counts.containsKey(current)) {
+				walk.parseHeaders(current);
+				unindexed.push(current);
+				current = current.getParentCount() > 0 ? current.getParent(0) : null;
+			}
+
+			ByteArrayOutputStream records = new ByteArrayOutputStream(unindexed.size() * RECORD_LENGTH);
+			byte[] record = new byte[RECORD_LENGTH];
+
+			while (!unindexed.isEmpty()) {
+				RevCommit commit = unindexed.pop();
+				int reachable = 1;
+
+				if (commit.getParentCount() > 0) {
+					reachable += counts.get(commit.getParent(0));
+					if (commit.getParentCount() > 1) {
+						reachable += countMergedCommits(walk, commit);
+					}
+				}
+
+				counts.put(commit.copy(), reachable);
+				commit.copyRawTo(record, 0);
+				NB.encodeInt32(record, Constants.OBJECT_ID_LENGTH, reachable);
+				records.write(record, 0, RECORD_LENGTH);
+			}
+
+			append(records);
+		}
+
+		return counts.get(commitId);
+	}
+
+	/*
+	 * Count the commits that a merge commit brings in through its other parents, and that are not
+	 * already reachable from its first parent.
+	 */
+	private static int countMergedCommits(RevWalk walk, RevCommit merge) throws IOException {
+		walk.reset();
+		walk.markUninteresting(merge.getParent(0));
+		for (int i = 1; i < merge.getParentCount(); i++) {
+			walk.markStart(merge.getParent(i));
+		}
+
+		int count = 0;
+		while (walk.next() != null) {
+			count++;
+		}
+		walk.reset();
+		return count;
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+
+		synchronized (this) {
+			if (loaded) {
+				return;
+			}
+
+			if (file.exists()) {
+				try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+					long length = align(randomAccessFile);
+					DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+						Channels.newInputStream(randomAccessFile.getChannel().position(HEADER.length))));
+					byte[] record = new byte[RECORD_LENGTH];
+					for (long position = HEADER.length; position < length; position += RECORD_LENGTH) {
+						inputStream.readFully(record);
+						ObjectId commitId = ObjectId.fromRaw(record, 0);
+						counts.put(commitId, NB.decodeInt32(record, Constants.OBJECT_ID_LENGTH));
+					}
+				}
+				catch (IOException e) {
+					log.warn("Failed to read commit count index " + file, e);
+				}
+			}
+
+			loaded = true;
+		}
+	}
+
+	/*
+	 * Truncate a partially written record at the end of the file, and discard the file if it does
+	 * not start with the expected header. Returns the length of the file.
+	 */
+	private long align(RandomAccessFile randomAccessFile) throws IOException {
+		long length = randomAccessFile.length();
+
+		if (length > 0) {
+			byte[] header = new byte[HEADER.length];
+			if (length >= HEADER.length) {
+				randomAccessFile.seek(0);
+				randomAccessFile.readFully(header);
+			}
+			if (!Arrays.equals(HEADER, header)) {
+				log.warn("Discarding commit count index {} in an unknown format", file);
+				length = 0;
+			}
+			else if ((length - HEADER.length) % RECORD_LENGTH != 0) {
+				log.info("Truncating a partially written record from commit count index {}", file);
+				length -= (length - HEADER.length) % RECORD_LENGTH;
+			}
+			randomAccessFile.setLength(length);
+		}
+
+		if (length == 0) {
+			randomAccessFile.seek(0);
+			randomAccessFile.write(HEADER);
+			length = HEADER.length;
+		}
+
+		return length;
+	}
+
+	private synchronized void append(ByteArrayOutputStream records) {
+		if (records.size() == 0) {
+			return;
+		}
+
+		try {
+			File parent = file.getParentFile();
+			if (!parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Failed to create " + parent);
+			}
+
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+				randomAccessFile.seek(align(randomAccessFile));
+				randomAccessFile.write(records.toByteArray());
+			}
+		}
+		catch (IOException e) {
+			log.warn("Failed to persist commit count index " + file, e);
+		}
+	}
+
+}
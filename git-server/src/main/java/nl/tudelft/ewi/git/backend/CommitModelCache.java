@@ -0,0 +1,81 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.DetailedCommitModel;
+import nl.tudelft.ewi.gitolite.git.GitException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache for {@link DetailedCommitModel DetailedCommitModels}. Commits are immutable and identified by
+ * their object id, so the models can be shared between requests and between repositories that share
+ * history (for example repositories created from the same template).
+ *
+ * Because the cache is shared, a commit id must be known to exist in the repository of a request
+ * before its model is looked up. Otherwise a repository could read the commits of another repository.
+ *
+ * The cached models are shared, and thus should not be modified.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class CommitModelCache {
+
+	private final Cache<ObjectId, DetailedCommitModel> cache;
+
+	@Inject
+	public CommitModelCache(Config config) {
+		this.cache = CacheBuilder.newBuilder()
+			.maximumSize(config.getCommitModelCacheSize())
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * Get the model for a commit, creating it if it is not in the cache.
+	 *
+	 * @param commitId Commit id for the commit.
+	 * @param loader Loader that creates the model for the commit.
+	 * @return The {@link DetailedCommitModel}.
+	 */
+	public DetailedCommitModel get(AnyObjectId commitId, Callable<DetailedCommitModel> loader) {
+		try {
+			return cache.get(commitId.copy(), loader);
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new GitException((Exception) cause);
+		}
+	}
+
+	/**
+	 * @param commitId Commit id for the commit.
+	 * @return The cached {@link DetailedCommitModel}, or null if the commit is not in the cache.
+	 */
+	public DetailedCommitModel getIfPresent(AnyObjectId commitId) {
+		return cache.getIfPresent(commitId);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the cache.
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+}
@@ -0,0 +1,363 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListeners;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.gitolite.git.GitException;
+import org.eclipse.jgit.lib.ObjectId;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache for the changed files between two trees. A diff is determined by the two trees it compares
+ * and the options used to format it, so the results are content addressed and can be shared between
+ * commits and repositories. The exception is a diff of which the rename detection exceeded its time
+ * budget, which depends on the load of the server. Such a diff is returned by the {@link Loader},
+ * but not cached.
+ *
+ * The cache has two tiers. Recently used diffs are kept on the heap. When the heap tier exceeds
+ * its size, the least recently used diffs are spilled to a directory on disk, which in turn is
+ * bounded in size as well. The cached diffs are shared, and thus should not be modified.
+ *
+ * Diffs are spilled on a background thread, so that the request that causes an eviction does not
+ * wait for the disk. When spilling falls behind, evicted diffs are dropped instead of spilled.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Slf4j
+@Singleton
+public class DiffCache {
+
+	private static final TypeReference<List<DiffFile<DiffContext<DiffLine>>>> DIFF_FILES_TYPE =
+		new TypeReference<List<DiffFile<DiffContext<DiffLine>>>>() {};
+
+	private static final String SPILL_FORMAT_VERSION = "v2";
+	private static final String SPILL_FILE_SUFFIX = ".json.gz";
+
+	private static final int SPILL_QUEUE_SIZE = 64;
+
+	private static final int FILE_OVERHEAD = 128;
+	private static final int CONTEXT_OVERHEAD = 48;
+	private static final int LINE_OVERHEAD = 72;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ExecutorService spillExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+		new ArrayBlockingQueue<>(SPILL_QUEUE_SIZE),
+		new ThreadFactoryBuilder().setDaemon(true).setNameFormat("diff-cache-spill-%d").build(),
+		new ThreadPoolExecutor.DiscardPolicy());
+	private final Cache<Key, List<DiffFile<DiffContext<DiffLine>>>> memory;
+	private final File spillDirectory;
+	private final long maximumSpillSize;
+	private final LinkedHashMap<String, Long> spilled = new LinkedHashMap<>(16, 0.75f, true);
+	private long spillSize = 0;
+
+	@Inject
+	public DiffCache(Config config) {
+		this.memory = CacheBuilder.newBuilder()
+			.maximumWeight(config.getDiffCacheMemorySize())
+			.<Key, List<DiffFile<DiffContext<DiffLine>>>> weigher((key, value) -> estimateSize(value))
+			.<Key, List<DiffFile<DiffContext<DiffLine>>>> removalListener(
+				RemovalListeners.asynchronous(this::onRemoval, spillExecutor))
+			.recordStats()
+			.build();
+		this.spillDirectory = config.getDiffCacheDirectory();
+		this.maximumSpillSize = config.getDiffCacheDiskSize();
+		loadSpilledEntries();
+	}
+
+	/**
+	 * Get the diff for a key, computing it if it is not in the cache. Concurrent requests for the
+	 * same key wait for a single computation, also when its result is not cacheable.
+	 *
+	 * @param key Key for the diff.
+	 * @param loader Loader that computes the diff.
+	 * @return the changed files.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public List<DiffFile<DiffContext<DiffLine>>> get(Key key, Loader loader) throws IOException {
+		try {
+			return memory.get(key, () -> {
+				List<DiffFile<DiffContext<DiffLine>>> diffFiles = readSpilled(key);
+				if (diffFiles != null) {
+					return diffFiles;
+				}
+
+				Result result = loader.load();
+				if (!result.isCacheable()) {
+					// A value of which the loading failed is not cached
+					throw new UncacheableResultException(result.getDiffFiles());
+				}
+				return result.getDiffFiles();
+			});
+		}
+		catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncacheableResultException) {
+				return ((UncacheableResultException) cause).getDiffFiles();
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new GitException((Exception) cause);
+		}
+	}
+
+	/**
+	 * @param key Key for the diff.
+	 * @return the cached changed files, or null if the diff is not in the cache.
+	 */
+	public List<DiffFile<DiffContext<DiffLine>>> getIfPresent(Key key) {
+		List<DiffFile<DiffContext<DiffLine>>> diffFiles = memory.getIfPresent(key);
+		return diffFiles != null ? diffFiles : readSpilled(key);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the heap tier of the cache.
+	 */
+	public CacheStats getStatistics() {
+		return memory.stats();
+	}
+
+	/**
+	 * @return the amount of bytes used by the disk tier of the cache.
+	 */
+	public synchronized long getSpillSize() {
+		return spillSize;
+	}
+
+	private void onRemoval(RemovalNotification<Key, List<DiffFile<DiffContext<DiffLine>>>> notification) {
+		if (notification.getCause() == RemovalCause.SIZE) {
+			spill(notification.getKey(), notification.getValue());
+		}
+	}
+
+	private void spill(Key key, List<DiffFile<DiffContext<DiffLine>>> diffFiles) {
+		String fileName = key.getFileName();
+		synchronized (this) {
+			if (maximumSpillSize <= 0 || spilled.containsKey(fileName)) {
+				return;
+			}
+		}
+
+		// Write outside of the lock, the file is only read once it is registered
+		File file = new File(spillDirectory, fileName);
+		try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(file))) {
+			objectMapper.writeValue(outputStream, diffFiles);
+		}
+		catch (IOException e) {
+			log.warn("Failed to spill diff " + key + " to " + file, e);
+			file.delete();
+			return;
+		}
+
+		synchronized (this) {
+			spilled.put(fileName, file.length());
+			spillSize += file.length();
+			evictSpilledEntries();
+		}
+	}
+
+	private List<DiffFile<DiffContext<DiffLine>>> readSpilled(Key key) {
+		String fileName = key.getFileName();
+		File file = new File(spillDirectory, fileName);
+		InputStream fileInputStream;
+
+		// Open the file under the lock, so that it is not evicted in between. Once opened, it can be
+		// read while it is evicted.
+		synchronized (this) {
+			if (spilled.get(fileName) == null) {
+				return null;
+			}
+
+			try {
+				fileInputStream = new FileInputStream(file);
+			}
+			catch (FileNotFoundException e) {
+				log.debug("Spilled diff {} was removed from {}", key, file);
+				removeSpilled(fileName);
+				return null;
+			}
+		}
+
+		try (InputStream fileStream = fileInputStream;
+		     InputStream inputStream = new GZIPInputStream(fileStream)) {
+			return objectMapper.readValue(inputStream, DIFF_FILES_TYPE);
+		}
+		catch (IOException e) {
+			log.warn("Failed to read spilled diff " + key + " from " + file, e);
+			removeSpilled(fileName);
+			return null;
+		}
+	}
+
+	private synchronized void removeSpilled(String fileName) {
+		Long size = spilled.remove(fileName);
+		if (size != null) {
+			spillSize -= size;
+			new File(spillDirectory, fileName).delete();
+		}
+	}
+
+	private synchronized void evictSpilledEntries() {
+		Iterator<Map.Entry<String, Long>> iterator = spilled.entrySet().iterator();
+		while (spillSize > maximumSpillSize && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			new File(spillDirectory, entry.getKey()).delete();
+			spillSize -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	private synchronized void loadSpilledEntries() {
+		if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+			log.warn("Failed to create diff cache directory {}", spillDirectory);
+			return;
+		}
+
+		File[] files = spillDirectory.listFiles((dir, name) -> name.endsWith(SPILL_FILE_SUFFIX));
+		if (files == null) {
+			return;
+		}
+
+		// Insert the least recently used entries first
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			spilled.put(file.getName(), file.length());
+			spillSize += file.length();
+		}
+
+		evictSpilledEntries();
+	}
+
+	/*
+	 * Rough estimate of the heap size of the changed files, used to bound the heap tier.
+	 */
+	static int estimateSize(List<DiffFile<DiffContext<DiffLine>>> diffFiles) {
+		long size = 0;
+		for (DiffFile<DiffContext<DiffLine>> diffFile : diffFiles) {
+			size += FILE_OVERHEAD + 2 * (length(diffFile.getOldPath()) + length(diffFile.getNewPath()));
+			if (diffFile.getContexts() == null) {
+				continue;
+			}
+
+			for (DiffContext<DiffLine> context : diffFile.getContexts()) {
+				size += CONTEXT_OVERHEAD;
+				for (DiffLine line : context.getLines()) {
+					size += LINE_OVERHEAD + 2 * length(line.getContent());
+				}
+			}
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	/**
+	 * Computes the changed files on a cache miss.
+	 */
+	@FunctionalInterface
+	public interface Loader {
+
+		Result load() throws IOException;
+
+	}
+
+	/**
+	 * The changed files computed by a {@link Loader}.
+	 */
+	@Value
+	public static class Result {
+
+		List<DiffFile<DiffContext<DiffLine>>> diffFiles;
+
+		/**
+		 * Whether the diff only depends on its {@link Key}, and thus may be cached.
+		 */
+		boolean cacheable;
+
+	}
+
+	private static class UncacheableResultException extends Exception {
+
+		@Getter
+		private final List<DiffFile<DiffContext<DiffLine>>> diffFiles;
+
+		UncacheableResultException(List<DiffFile<DiffContext<DiffLine>>> diffFiles) {
+			super(null, null, false, false);
+			this.diffFiles = diffFiles;
+		}
+
+	}
+
+	/**
+	 * Key for a cached diff.
+	 */
+	@Value
+	public static class Key {
+
+		/**
+		 * Tree to compare with, or {@code null} for the empty tree.
+		 */
+		ObjectId oldTree;
+
+		ObjectId newTree;
+
+		int context;
+
+		/**
+		 * A copy of the {@link DiffOptions}, which should not be modified.
+		 */
+		DiffOptions options;
+
+		String getFileName() {
+			String name = String.format("%s:%s..%s:%d:%s", SPILL_FORMAT_VERSION,
+				oldTree == null ? "empty" : oldTree.name(), newTree.name(), context, options);
+			return Hashing.sha1().hashString(name, Charsets.UTF_8).toString() + SPILL_FILE_SUFFIX;
+		}
+
+	}
+
+}
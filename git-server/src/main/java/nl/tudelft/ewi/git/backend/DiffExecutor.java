@@ -0,0 +1,40 @@
+package nl.tudelft.ewi.git.backend;
+
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.inspector.DiffSession;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded executor for formatting the files in a diff in parallel.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class DiffExecutor extends BoundedExecutor {
+
+	@Inject
+	public DiffExecutor(Config config) {
+		super("diff-formatter-%d", config.getDiffThreads(), config.getDiffQueueSize(),
+			config.getDiffRequestParallelism());
+	}
+
+	/**
+	 * Apply a function to every input. The results are in the same order as the inputs.
+	 *
+	 * @param session {@link DiffSession} for the calling thread. Other threads use a
+	 *    {@link DiffSession#fork() fork} of the session.
+	 * @param inputs Inputs to transform.
+	 * @param function Function to apply.
+	 * @param <T> Type of the inputs.
+	 * @param <R> Type of the results.
+	 * @return the results.
+	 */
+	public <T, R> List<R> map(DiffSession session, List<T> inputs, BiFunction<DiffSession, T, R> function) {
+		return map(session, DiffSession::fork, inputs, function);
+	}
+
+}
@@ -0,0 +1,83 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Value;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffStatModel.DiffStatFile;
+import org.eclipse.jgit.lib.ObjectId;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+
+/**
+ * Cache for the diffstat between two trees. Like a diff, a diffstat only depends on the trees it
+ * compares and the options used to compare them, so it can be shared between commits, branches
+ * and repositories.
+ *
+ * The cached files are shared, and thus should not be modified.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class DiffStatCache {
+
+	private final Cache<Key, List<DiffStatFile>> cache;
+
+	@Inject
+	public DiffStatCache(Config config) {
+		this.cache = CacheBuilder.newBuilder()
+			.maximumSize(config.getDiffStatCacheSize())
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * @param key Key for the diffstat.
+	 * @return the cached files, or null if the diffstat is not in the cache.
+	 */
+	public List<DiffStatFile> getIfPresent(Key key) {
+		return cache.getIfPresent(key);
+	}
+
+	/**
+	 * Store the diffstat for two trees.
+	 *
+	 * @param key Key for the diffstat.
+	 * @param files The changed files.
+	 */
+	public void put(Key key, List<DiffStatFile> files) {
+		cache.put(key, files);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the cache.
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	/**
+	 * Key for a cached diffstat.
+	 */
+	@Value
+	public static class Key {
+
+		/**
+		 * Tree to compare with, or {@code null} for the empty tree.
+		 */
+		ObjectId oldTree;
+
+		ObjectId newTree;
+
+		/**
+		 * A copy of the {@link DiffOptions}, which should not be modified.
+		 */
+		DiffOptions options;
+
+	}
+
+}
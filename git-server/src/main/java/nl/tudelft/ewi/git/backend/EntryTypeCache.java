@@ -0,0 +1,86 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.EntryType;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ObjectStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+
+/**
+ * Cache for the {@link EntryType} of blobs. Whether a blob is {@link EntryType#TEXT} or
+ * {@link EntryType#BINARY} only depends on its contents, so the classification is keyed by
+ * blob id and shared between commits and repositories.
+ *
+ * Blobs are classified based on their first few bytes, like {@link RawText#isBinary(byte[], int)}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Singleton
+public class EntryTypeCache {
+
+	private static final int FIRST_FEW_BYTES = 8000;
+
+	private final Cache<ObjectId, EntryType> cache;
+
+	@Inject
+	public EntryTypeCache(Config config) {
+		this.cache = CacheBuilder.newBuilder()
+			.maximumSize(config.getEntryTypeCacheSize())
+			.recordStats()
+			.build();
+	}
+
+	/**
+	 * Get the {@link EntryType} for a blob, reading the start of the blob if it is not in the cache.
+	 *
+	 * @param reader ObjectReader to read the blob with.
+	 * @param blobId Object id for the blob.
+	 * @return {@link EntryType#TEXT} or {@link EntryType#BINARY}.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public EntryType get(ObjectReader reader, AnyObjectId blobId) throws IOException {
+		EntryType entryType = cache.getIfPresent(blobId);
+		if (entryType == null) {
+			entryType = classify(reader, blobId);
+			cache.put(blobId.copy(), entryType);
+		}
+		return entryType;
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the cache.
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	private static EntryType classify(ObjectReader reader, AnyObjectId blobId) throws IOException {
+		ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+		byte[] buffer = new byte[(int) Math.min(loader.getSize(), FIRST_FEW_BYTES)];
+		int length = 0;
+
+		try (ObjectStream stream = loader.openStream()) {
+			while (length < buffer.length) {
+				int read = stream.read(buffer, length, buffer.length - length);
+				if (read < 0) {
+					break;
+				}
+				length += read;
+			}
+		}
+
+		return RawText.isBinary(buffer, length) ? EntryType.BINARY : EntryType.TEXT;
+	}
+
+}
@@ -4,11 +4,20 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.git.backend.AheadBehindCache.Counts;
+import nl.tudelft.ewi.git.backend.RenameCache.Renames;
+import nl.tudelft.ewi.git.inspector.DiffBudget;
 import nl.tudelft.ewi.git.inspector.DiffContextFormatter;
+import nl.tudelft.ewi.git.inspector.DiffLimits;
+import nl.tudelft.ewi.git.inspector.DiffSession;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
@@ -17,12 +26,21 @@ import nl.tudelft.ewi.git.models.BlameModel.BlameBlock;
 import nl.tudelft.ewi.git.models.BranchModel;
 import nl.tudelft.ewi.git.models.CommitModel;
 import nl.tudelft.ewi.git.models.CommitSubList;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
+import nl.tudelft.ewi.git.models.CompactDiffModel.CompactDiffContext;
 import nl.tudelft.ewi.git.models.DetailedCommitModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel.DiffBlameLine;
 import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffOptions.CommitDetail;
+import nl.tudelft.ewi.git.models.DiffStatModel;
+import nl.tudelft.ewi.git.models.DiffStatModel.DiffStatFile;
 import nl.tudelft.ewi.git.models.EntryType;
+import nl.tudelft.ewi.git.models.RefListOptions;
+import nl.tudelft.ewi.git.models.RepositoryFields;
+import nl.tudelft.ewi.git.models.RepositoryFields.Field;
 import nl.tudelft.ewi.git.models.TagModel;
 import nl.tudelft.ewi.git.web.api.Transformers;
 import nl.tudelft.ewi.gitolite.git.GitException;
@@ -31,42 +49,43 @@ import org.eclipse.jgit.api.ListBranchCommand.ListMode;
 import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
-import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
-import org.eclipse.jgit.diff.RawText;
-import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.lib.ObjectStream;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.RevWalkUtils;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import javax.ws.rs.NotFoundException;
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -82,6 +101,28 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 
 	private final Transformers transformers;
 
+	private final CommitModelCache commitModelCache;
+
+	private final AheadBehindCache aheadBehindCache = new AheadBehindCache();
+
+	private final CommitCountIndex commitCountIndex;
+
+	private final DiffCache diffCache;
+
+	private final DiffStatCache diffStatCache;
+
+	private final RenameCache renameCache;
+
+	private final BlameCache blameCache;
+
+	private final EntryTypeCache entryTypeCache;
+
+	private final DiffExecutor diffExecutor;
+
+	private final BlameExecutor blameExecutor;
+
+	private final DiffLimits diffLimits;
+
 	@Getter
 	private final Git git;
 
@@ -94,16 +135,40 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 
 	private final AtomicBoolean closed = new AtomicBoolean(false);
 
-	public JGitRepositoryFacade(Transformers transformers, nl.tudelft.ewi.gitolite.repositories.Repository repository) throws IOException {
+	public JGitRepositoryFacade(Transformers transformers, CommitModelCache commitModelCache, DiffCache diffCache,
+	                            DiffStatCache diffStatCache, RenameCache renameCache, BlameCache blameCache,
+	                            EntryTypeCache entryTypeCache, DiffExecutor diffExecutor, BlameExecutor blameExecutor,
+	                            DiffLimits diffLimits, File commitCountFile,
+	                            nl.tudelft.ewi.gitolite.repositories.Repository repository) throws IOException {
 		Preconditions.checkNotNull(repository);
 		this.transformers = transformers;
+		this.commitModelCache = commitModelCache;
+		this.diffCache = diffCache;
+		this.diffStatCache = diffStatCache;
+		this.renameCache = renameCache;
+		this.blameCache = blameCache;
+		this.entryTypeCache = entryTypeCache;
+		this.diffExecutor = diffExecutor;
+		this.blameExecutor = blameExecutor;
+		this.diffLimits = diffLimits;
 		this.git = Git.open(repository.getPath().toFile());
 		this.repo = git.getRepository();
 		this.repository = repository;
+		this.commitCountIndex = new CommitCountIndex(repo, commitCountFile);
 	}
 
-	void incrementUses() {
-		uses.incrementAndGet();
+	/**
+	 * Register a new user for this handle.
+	 *
+	 * @return false if the handle has already been closed.
+	 */
+	boolean incrementUses() {
+		for (int current = uses.get(); current > 0; current = uses.get()) {
+			if (uses.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public boolean isClosed() {
@@ -111,20 +176,78 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 	}
 
 	@Override
-	public DetailedRepositoryModel getRepositoryModel() {
+	public DetailedRepositoryModel getRepositoryModel(RepositoryFields fields) {
 		DetailedRepositoryModel model = new DetailedRepositoryModel();
-		transformers.setBaseAttributes(repository, model);
-		model.setBranches(getBranches());
-		model.setTags(getTags());
+		transformers.setBaseAttributes(repository, model, fields);
+
+		if (fields.contains(Field.BRANCHES)) {
+			model.setBranches(getBranches());
+		}
+		else if (fields.contains(Field.BRANCH_NAMES)) {
+			model.setBranches(getBranchNames());
+		}
+
+		if (fields.contains(Field.TAGS)) {
+			model.setTags(getTags());
+		}
+		else if (fields.contains(Field.TAG_NAMES)) {
+			model.setTags(getTagNames());
+		}
+
 		return model;
 	}
 
-	@Override
-	public Collection<BranchModel> getBranches() {
+	/*
+	 * List the branches with only their names set, which requires no commits to be parsed.
+	 */
+	private Collection<BranchModel> getBranchNames() {
 		try {
 			return git.branchList()
 				.setListMode(ListMode.ALL)
 				.call().stream()
+				.map(ref -> {
+					BranchModel branch = new BranchModel();
+					branch.setName(ref.getName());
+					return branch;
+				})
+				.collect(Collectors.toList());
+		}
+		catch (GitAPIException e) {
+			throw new GitException(e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * List the tags with only their names set, which requires no tags or commits to be parsed.
+	 */
+	private Collection<TagModel> getTagNames() {
+		try {
+			return git.tagList()
+				.call().stream()
+				.map(ref -> {
+					TagModel tag = new TagModel();
+					tag.setName(ref.getName());
+					return tag;
+				})
+				.collect(Collectors.toList());
+		}
+		catch (GitAPIException e) {
+			throw new GitException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Collection<BranchModel> getBranches() {
+		return getBranches(new RefListOptions());
+	}
+
+	@Override
+	public Collection<BranchModel> getBranches(RefListOptions options) {
+		try {
+			List<Ref> refs = git.branchList()
+				.setListMode(ListMode.ALL)
+				.call();
+			return page(refs, options).stream()
 				.map(this::transformToBranchModel)
 				.collect(Collectors.toList());
 		}
@@ -135,9 +258,14 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 
 	@Override
 	public Collection<TagModel> getTags() {
+		return getTags(new RefListOptions());
+	}
+
+	@Override
+	public Collection<TagModel> getTags(RefListOptions options) {
 		try {
-			return git.tagList()
-				.call().stream()
+			List<Ref> refs = git.tagList().call();
+			return page(refs, options).stream()
 				.map(this::transformTagModel)
 				.collect(Collectors.toList());
 		}
@@ -146,23 +274,107 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
+	/*
+	 * Sort the refs and select the page after the cursor, so that only the refs on the page have to
+	 * be transformed into models.
+	 */
+	private List<Ref> page(List<Ref> refs, RefListOptions options) {
+		Preconditions.checkArgument(options.getLimit() >= 0, "Limit should be non-negative");
+
+		List<Ref> sorted = Lists.newArrayList(refs);
+		String after = options.getAfter();
+		int from = 0;
+
+		switch (options.getSort()) {
+			case COMMIT_TIME:
+				Map<String, Integer> commitTimes = commitTimes(refs);
+				sorted.sort(Comparator.comparing((Ref ref) -> commitTimes.get(ref.getName())).reversed()
+					.thenComparing(Ref::getName));
+				if (after != null) {
+					from = Iterables.indexOf(sorted, ref -> ref.getName().equals(after)) + 1;
+					if (from == 0) {
+						throw new NotFoundException("Ref not found: " + after);
+					}
+				}
+				break;
+			default:
+				sorted.sort(Comparator.comparing(Ref::getName));
+				if (after != null) {
+					// The cursor does not have to exist anymore to continue after it
+					from = Iterables.indexOf(sorted, ref -> ref.getName().compareTo(after) > 0);
+					if (from < 0) {
+						from = sorted.size();
+					}
+				}
+				break;
+		}
+
+		int to = options.getLimit() == 0 ? sorted.size() : Math.min(sorted.size(), from + options.getLimit());
+		return sorted.subList(from, to);
+	}
+
+	/*
+	 * Read the commit time of the commit that every ref points to. Only the headers of the commits
+	 * are parsed. Tags that do not point to a commit are considered to be the oldest.
+	 */
+	private Map<String, Integer> commitTimes(List<Ref> refs) {
+		Map<String, Integer> commitTimes = Maps.newHashMapWithExpectedSize(refs.size());
+
+		try(RevWalk walk = new RevWalk(repo)) {
+			walk.setRetainBody(false);
+			for (Ref ref : refs) {
+				int commitTime = 0;
+				try {
+					commitTime = walk.parseCommit(ref.getObjectId()).getCommitTime();
+				}
+				catch (IncorrectObjectTypeException e) {
+					log.debug("Ref {} does not point to a commit", ref.getName());
+				}
+				commitTimes.put(ref.getName(), commitTime);
+			}
+		}
+		catch (IOException e) {
+			throw new GitException(e.getMessage(), e);
+		}
+
+		return commitTimes;
+	}
+
 	@Override
 	public BranchModel getBranch(String name) {
 		Preconditions.checkArgument(!Strings.isNullOrEmpty(name));
+		return transformToBranchModel(findBranch(name));
+	}
+
+	/*
+	 * Look up a branch by its full name, or by its name relative to refs/heads/ or refs/remotes/,
+	 * in the ref database. Only if none of these exist, the first branch whose name ends with the
+	 * given name is used.
+	 */
+	private Ref findBranch(String name) {
 		try {
+			Ref ref = null;
+			if (name.startsWith(Constants.R_HEADS) || name.startsWith(Constants.R_REMOTES)) {
+				ref = repo.exactRef(name);
+			}
+			if (ref == null) {
+				ref = repo.exactRef(Constants.R_HEADS + name);
+			}
+			if (ref == null) {
+				ref = repo.exactRef(Constants.R_REMOTES + name);
+			}
+			if (ref != null && ref.getObjectId() != null) {
+				return ref;
+			}
+
 			return git.branchList()
 				.setListMode(ListMode.ALL)
-//				.setContains(name)
 				.call().stream()
 				.filter(branch -> branch.getName().endsWith(name))
-				.map(this::transformToBranchModel)
 				.findFirst()
-				.get();
-		}
-		catch (NoSuchElementException | RefNotFoundException e) {
-			throw new NotFoundException(e.getMessage(), e);
+				.orElseThrow(() -> new NotFoundException("Branch " + name + " not found"));
 		}
-		catch (GitAPIException e) {
+		catch (IOException | GitAPIException e) {
 			throw new GitException(e.getMessage(), e);
 		}
 	}
@@ -243,8 +455,13 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		Preconditions.checkNotNull(commitId);
 
 		try(RevWalk walk = new RevWalk(repo)) {
-			RevCommit revCommit = walk.parseCommit(repo.resolve(commitId));
-			return transformDetailedCommitModel(revCommit);
+			ObjectId objectId = resolveCommitId(commitId);
+			DetailedCommitModel cached = commitModelCache.getIfPresent(objectId);
+			if (cached != null) {
+				return cached;
+			}
+
+			return transformDetailedCommitModel(walk.parseCommit(objectId));
 		}
 		catch (MissingObjectException e) {
 			throw new NotFoundException(e.getMessage(), e);
@@ -254,6 +471,19 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
+	/*
+	 * Resolve a commit id, and check that the commit exists in this repository. A full commit id is
+	 * resolved without reading the object, and the caches are shared between repositories, so a
+	 * commit of another repository must not be looked up in them.
+	 */
+	private ObjectId resolveCommitId(String commitId) throws IOException {
+		ObjectId objectId = repo.resolve(commitId);
+		if (objectId == null || !repo.hasObject(objectId)) {
+			throw new NotFoundException("Commit " + commitId + " not found");
+		}
+		return objectId;
+	}
+
 	protected BranchModel transformToBranchModel(Ref input) {
 		BranchModel branch = new BranchModel();
 		String name = input.getName();
@@ -275,18 +505,11 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		Ref master = repo.getRef(REF_MASTER);
 		int ahead = 0, behind = 0;
 
-		if(!input.equals(master)){
+		if(master != null && !input.equals(master)){
 			RevCommit trackingCommit = walk.parseCommit(master.getObjectId());
-
-			walk.setRevFilter(RevFilter.MERGE_BASE);
-			walk.markStart(localCommit);
-			walk.markStart(trackingCommit);
-			RevCommit mergeBase = walk.next();
-
-			walk.reset();
-			walk.setRevFilter(RevFilter.ALL);
-			ahead = RevWalkUtils.count(walk, localCommit, mergeBase);
-			behind = RevWalkUtils.count(walk, trackingCommit, mergeBase);
+			Counts counts = aheadBehindCache.get(walk, input.getName(), localCommit, trackingCommit);
+			ahead = counts.getAhead();
+			behind = counts.getBehind();
 		}
 
 		branch.setAhead(ahead);
@@ -317,7 +540,18 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		return setBasicCommitModelProperties(revCommit, new CommitModel());
 	}
 
+	/**
+	 * Get the {@link DetailedCommitModel} for a commit. Models are shared through the
+	 * {@link CommitModelCache}, and thus should not be modified.
+	 *
+	 * @param revCommit Commit to transform.
+	 * @return The {@code DetailedCommitModel}.
+	 */
 	protected DetailedCommitModel transformDetailedCommitModel(RevCommit revCommit) {
+		return commitModelCache.get(revCommit, () -> createDetailedCommitModel(revCommit));
+	}
+
+	protected DetailedCommitModel createDetailedCommitModel(RevCommit revCommit) {
 		DetailedCommitModel commit = setBasicCommitModelProperties(revCommit, new DetailedCommitModel());
 		commit.setFullMessage(revCommit.getFullMessage());
 		return commit;
@@ -334,39 +568,58 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 
 	@Override
 	public CommitSubList getCommitsFor(String branchName, int skip, int limit) {
-		try {
-			Iterable<RevCommit> allCommits = git.log()
-				.add(repo.resolve(branchName))
-				.call();
+		try(RevWalk walk = new RevWalk(repo)) {
+			ObjectId branchId = repo.resolve(branchName);
+			if (branchId == null) {
+				throw new NotFoundException("Branch " + branchName + " not found");
+			}
 
-			Iterable<RevCommit> commitsInRange = git.log()
-				.add(repo.resolve(branchName))
-				.setSkip(skip)
-				.setMaxCount(limit)
-				.call();
+			// Only the bodies of the commits in the requested page are needed
+			walk.setRetainBody(false);
+			walk.markStart(walk.parseCommit(branchId));
+
+			int skipped = 0;
+			while (skipped < skip && walk.next() != null) {
+				skipped++;
+			}
+
+			RevCommit revCommit;
+			List<CommitModel> commits = Lists.newArrayList();
+			while (commits.size() < limit && (revCommit = walk.next()) != null) {
+				DetailedCommitModel commit = commitModelCache.getIfPresent(revCommit);
+				if (commit == null) {
+					walk.parseBody(revCommit);
+					commit = transformDetailedCommitModel(revCommit);
+				}
+				commits.add(commit);
+			}
 
 			CommitSubList commitSubList = new CommitSubList();
 			commitSubList.setSkip(skip);
 			commitSubList.setLimit(limit);
-			commitSubList.setTotal(Iterables.size(allCommits));
-			commitSubList.setCommits(Lists.newArrayList(Iterables.transform(commitsInRange, this::transformDetailedCommitModel)));
+			commitSubList.setTotal(commitCountIndex.getCount(branchId));
+			commitSubList.setCommits(commits);
 			return commitSubList;
 		}
 		catch (MissingObjectException e) {
 			throw new NotFoundException(e.getMessage(), e);
 		}
-		catch (IOException | GitAPIException e) {
+		catch (IOException e) {
 			throw new GitException(e);
 		}
 	}
 
+	@Override
+	public ObjectId resolveBranch(String branchName) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(branchName));
+
+		return findBranch(branchName).getObjectId();
+	}
+
 	@Override
 	public CommitModel mergeBase(String branchName) {
 		try(RevWalk walk = new RevWalk(git.getRepository())) {
-			walk.setRevFilter(RevFilter.MERGE_BASE);
-			walk.markStart(walk.lookupCommit(repo.resolve(REF_MASTER)));
-			walk.markStart(walk.lookupCommit(repo.resolve(branchName)));
-			RevCommit mergeBase = walk.next();
+			RevCommit mergeBase = findMergeBase(walk, walk.parseCommit(resolveBranch(branchName)));
 			return transformDetailedCommitModel(mergeBase);
 		}
 		catch (MissingObjectException e) {
@@ -391,52 +644,336 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 	}
 
 	@Override
-	public DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines) {
+	public DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines,
+	                               DiffOptions options) {
 		Preconditions.checkNotNull(rightCommitId);
 
-		StoredConfig config = repo.getConfig();
-		config.setString("diff", null, "algorithm", "histogram");
+		try(DiffSession session = new DiffSession(repo, contextLines, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevCommit oldCommit = Strings.isNullOrEmpty(leftCommitId) ? null : parseCommit(walk, leftCommitId);
+			RevCommit newCommit = parseCommit(walk, rightCommitId);
+			return calculateDiff(session, walk, oldCommit, newCommit);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
 
-		try(ObjectReader objectReader = repo.newObjectReader()) {
-			DiffModel diffModel = new DiffModel();
+	@Override
+	public DiffModel calculateBranchDiff(String branchName, int contextLines, DiffOptions options) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(branchName));
+
+		try(DiffSession session = new DiffSession(repo, contextLines, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevCommit tip = walk.parseCommit(resolveBranch(branchName));
+			RevCommit mergeBase = findMergeBase(walk, tip);
+			return calculateDiff(session, walk, mergeBase, tip);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
 
-			AbstractTreeIterator oldTreeIter = new EmptyTreeIterator();
-			if (!Strings.isNullOrEmpty(leftCommitId)) {
-				oldTreeIter = createTreeParser(leftCommitId);
-				diffModel.setOldCommit(retrieveCommit(leftCommitId));
-			}
+	/*
+	 * Calculate the diff between two commits that were parsed by the walk of the session.
+	 */
+	private DiffModel calculateDiff(DiffSession session, RevWalk walk, RevCommit oldCommit,
+	                                RevCommit newCommit) throws IOException {
+		RevTree oldTree = oldCommit == null ? null : oldCommit.getTree();
+		RevTree newTree = newCommit.getTree();
+		DiffModel diffModel = createDiffModel(walk, oldCommit, newCommit, session.getOptions());
+
+		List<DiffFile<DiffContext<DiffLine>>> diffFiles = diffCache.get(createDiffCacheKey(oldTree, newTree, session), () -> {
+			Renames renames = scanDiffEntries(session, oldTree, newTree);
+			return new DiffCache.Result(createDiffFiles(session, renames.getEntries()), renames.isComplete());
+		});
+
+		diffModel.setDiffs(diffFiles);
+		return diffModel;
+	}
 
-			AbstractTreeIterator newTreeIter = createTreeParser(rightCommitId);
-			diffModel.setNewCommit(retrieveCommit(rightCommitId));
+	@Override
+	public CompactDiffModel calculateCompactDiff(String leftCommitId, String rightCommitId, int contextLines,
+	                                             DiffOptions options) {
+		Preconditions.checkNotNull(rightCommitId);
 
-			List<DiffEntry> diffs = git.diff()
-				.setContextLines(contextLines)
-				.setOldTree(oldTreeIter)
-				.setNewTree(newTreeIter)
-				.call();
+		try(DiffSession session = new DiffSession(repo, contextLines, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevCommit oldCommit = Strings.isNullOrEmpty(leftCommitId) ? null : parseCommit(walk, leftCommitId);
+			RevCommit newCommit = parseCommit(walk, rightCommitId);
+			return calculateCompactDiff(session, walk, oldCommit, newCommit);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
 
-			RenameDetector rd = new RenameDetector(repo);
-			rd.addAll(diffs);
-			diffs = rd.compute();
+	@Override
+	public CompactDiffModel calculateCompactBranchDiff(String branchName, int contextLines, DiffOptions options) {
+		Preconditions.checkArgument(!Strings.isNullOrEmpty(branchName));
+
+		try(DiffSession session = new DiffSession(repo, contextLines, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevCommit tip = walk.parseCommit(resolveBranch(branchName));
+			RevCommit mergeBase = findMergeBase(walk, tip);
+			return calculateCompactDiff(session, walk, mergeBase, tip);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
 
-			List<DiffFile<DiffContext<DiffLine>>> diffFiles = diffs.stream()
-				.filter(diffEntry -> isBlob(objectReader, diffEntry))
-				.map(this::transformToDiffFile)
-				.collect(Collectors.toList());
+	/*
+	 * Calculate the compact diff between two commits that were parsed by the walk of the session.
+	 * Files that are already in the diff cache are encoded from their lines, other files are encoded
+	 * directly from their edits.
+	 */
+	private CompactDiffModel calculateCompactDiff(DiffSession session, RevWalk walk, RevCommit oldCommit,
+	                                              RevCommit newCommit) throws IOException {
+		RevTree oldTree = oldCommit == null ? null : oldCommit.getTree();
+		RevTree newTree = newCommit.getTree();
+		DiffModel diffModel = createDiffModel(walk, oldCommit, newCommit, session.getOptions());
 
-			List<CommitModel> commitModels = commitDifference(rightCommitId, leftCommitId).stream()
-				.map(this::transformDetailedCommitModel)
-				.collect(Collectors.toList());
+		List<DiffFile<DiffContext<DiffLine>>> diffFiles = diffCache.getIfPresent(
+			createDiffCacheKey(oldTree, newTree, session));
 
-			diffModel.setCommits(commitModels);
+		if (diffFiles != null) {
 			diffModel.setDiffs(diffFiles);
+			return CompactDiffModel.of(diffModel);
+		}
+
+		diffModel.setDiffs(Collections.emptyList());
+		CompactDiffModel compactDiffModel = CompactDiffModel.of(diffModel);
+		List<DiffEntry> diffs = scanDiffEntries(session, oldTree, newTree).getEntries();
+		compactDiffModel.setDiffs(new DiffBudget(diffLimits)
+			.applyAll(diffExecutor.map(session, diffs, this::transformToCompactDiffFile)));
+		return compactDiffModel;
+	}
+
+	@Override
+	public DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines,
+	                               DiffOptions options, DiffFileConsumer consumer) throws IOException {
+		Preconditions.checkNotNull(rightCommitId);
+		Preconditions.checkNotNull(consumer);
+
+		try(DiffSession session = new DiffSession(repo, contextLines, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevCommit oldCommit = Strings.isNullOrEmpty(leftCommitId) ? null : parseCommit(walk, leftCommitId);
+			RevCommit newCommit = parseCommit(walk, rightCommitId);
+			RevTree oldTree = oldCommit == null ? null : oldCommit.getTree();
+			RevTree newTree = newCommit.getTree();
+			DiffModel diffModel = createDiffModel(walk, oldCommit, newCommit, session.getOptions());
+
+			List<DiffFile<DiffContext<DiffLine>>> diffFiles = diffCache.getIfPresent(
+				createDiffCacheKey(oldTree, newTree, session));
+
+			if (diffFiles != null) {
+				for (DiffFile<DiffContext<DiffLine>> diffFile : diffFiles) {
+					consumer.accept(diffFile);
+				}
+			}
+			else {
+				// Format the files one at a time, so only one file has to be kept in memory
+				DiffBudget budget = new DiffBudget(diffLimits);
+				for (DiffEntry diffEntry : scanDiffEntries(session, oldTree, newTree).getEntries()) {
+					consumer.accept(budget.apply(transformToDiffFile(session, diffEntry)));
+				}
+			}
+
 			return diffModel;
 		}
-		catch (IOException | GitAPIException e) {
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public DiffFile<DiffContext<DiffLine>> calculateDiffFile(String leftCommitId, String rightCommitId, String path,
+	                                                         int contextLines, DiffOptions options) {
+		Preconditions.checkNotNull(rightCommitId);
+		Preconditions.checkNotNull(path);
+
+		// The file is requested explicitly, so its lines are formatted regardless of the size limits
+		try(DiffSession session = new DiffSession(repo, contextLines, options);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevTree oldTree = Strings.isNullOrEmpty(leftCommitId) ? null : parseTree(walk, leftCommitId);
+			RevTree newTree = parseTree(walk, rightCommitId);
+
+			DiffEntry diffEntry = scanDiffEntries(session, oldTree, newTree).getEntries().stream()
+				.filter(entry -> path.equals(entry.getNewPath()) || path.equals(entry.getOldPath()))
+				.findFirst()
+				.orElseThrow(() -> new NotFoundException("File " + path + " is not changed"));
+
+			return transformToDiffFile(session, diffEntry);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
 			throw new GitException(e);
 		}
 	}
 
+	@Override
+	public DiffStatModel calculateDiffStat(String leftCommitId, String rightCommitId, DiffOptions options) {
+		Preconditions.checkNotNull(rightCommitId);
+
+		try(DiffSession session = new DiffSession(repo, 0, options, diffLimits);
+			RevWalk walk = new RevWalk(session.getReader())) {
+			RevTree oldTree = Strings.isNullOrEmpty(leftCommitId) ? null : parseTree(walk, leftCommitId);
+			RevTree newTree = parseTree(walk, rightCommitId);
+
+			DiffStatCache.Key key = new DiffStatCache.Key(oldTree == null ? null : oldTree.copy(), newTree.copy(),
+				new DiffOptions(options));
+			List<DiffStatFile> files = diffStatCache.getIfPresent(key);
+			if (files == null) {
+				Renames renames = scanDiffEntries(session, oldTree, newTree);
+				files = diffExecutor.map(session, renames.getEntries(), this::transformToDiffStatFile);
+				if (renames.isComplete()) {
+					diffStatCache.put(key, files);
+				}
+			}
+
+			int additions = 0;
+			int deletions = 0;
+			for (DiffStatFile file : files) {
+				additions += file.getAdditions() == null ? 0 : file.getAdditions();
+				deletions += file.getDeletions() == null ? 0 : file.getDeletions();
+			}
+			return new DiffStatModel(files, additions, deletions);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	/*
+	 * Create a DiffModel for two commits, without the changed files. The walk is reset.
+	 */
+	private DiffModel createDiffModel(RevWalk walk, RevCommit oldCommit, RevCommit newCommit,
+	                                  DiffOptions options) throws IOException {
+		DiffModel diffModel = new DiffModel();
+
+		if (oldCommit != null) {
+			diffModel.setOldCommit(transformDetailedCommitModel(oldCommit));
+		}
+
+		diffModel.setNewCommit(transformDetailedCommitModel(newCommit));
+		diffModel.setCommits(Lists.newArrayList());
+
+		if (options.getCommits() != CommitDetail.NONE) {
+			listCommits(walk, oldCommit, newCommit, options, diffModel);
+		}
+
+		return diffModel;
+	}
+
+	/*
+	 * List the page of commits between two commits, in the same order as RevWalkUtils.find. The
+	 * commits before the cursor are walked without parsing their bodies.
+	 */
+	private void listCommits(RevWalk walk, RevCommit oldCommit, RevCommit newCommit, DiffOptions options,
+	                         DiffModel diffModel) throws IOException {
+		String after = options.getCommitsAfter();
+		Preconditions.checkArgument(after == null || ObjectId.isId(after), "Invalid commits cursor %s", after);
+		Preconditions.checkArgument(options.getCommitsLimit() >= 0, "Commits limit should be non-negative");
+
+		ObjectId cursor = after == null ? null : ObjectId.fromString(after);
+		int limit = options.getCommitsLimit();
+		List<CommitModel> commits = diffModel.getCommits();
+
+		walk.reset();
+		walk.setRevFilter(RevFilter.ALL);
+		walk.setRetainBody(false);
+		try {
+			walk.markStart(newCommit);
+			if (oldCommit != null) {
+				walk.markUninteresting(oldCommit);
+			}
+
+			RevCommit revCommit;
+			while ((revCommit = walk.next()) != null) {
+				if (cursor != null) {
+					if (cursor.equals(revCommit)) {
+						cursor = null;
+					}
+				}
+				else if (limit > 0 && commits.size() == limit) {
+					diffModel.setCommitsCursor(commits.get(limit - 1).getCommit());
+					break;
+				}
+				else {
+					commits.add(transformCommit(walk, revCommit, options.getCommits()));
+				}
+			}
+		}
+		finally {
+			walk.setRetainBody(true);
+			walk.reset();
+		}
+	}
+
+	private CommitModel transformCommit(RevWalk walk, RevCommit revCommit, CommitDetail detail) throws IOException {
+		if (detail == CommitDetail.FULL) {
+			CommitModel commit = commitModelCache.getIfPresent(revCommit);
+			if (commit != null) {
+				return commit;
+			}
+		}
+
+		walk.parseBody(revCommit);
+		return detail == CommitDetail.FULL ? transformDetailedCommitModel(revCommit) :
+			setBasicCommitModelProperties(revCommit, new CommitModel());
+	}
+
+	private static DiffCache.Key createDiffCacheKey(RevTree oldTree, RevTree newTree, DiffSession session) {
+		return new DiffCache.Key(oldTree == null ? null : oldTree.copy(), newTree.copy(),
+			session.getContext(), new DiffOptions(session.getOptions()));
+	}
+
+	protected List<DiffFile<DiffContext<DiffLine>>> createDiffFiles(DiffSession session, List<DiffEntry> diffs) {
+		List<DiffFile<DiffContext<DiffLine>>> diffFiles = diffExecutor.map(session, diffs, this::transformToDiffFile);
+		return new DiffBudget(diffLimits).applyAll(diffFiles);
+	}
+
+	/*
+	 * Scan the changed files between two trees. The renames are incomplete when their detection
+	 * exceeded its time budget, in which case the diff should not be cached.
+	 */
+	protected Renames scanDiffEntries(DiffSession session, RevTree oldTree, RevTree newTree) throws IOException {
+		ObjectReader objectReader = session.getReader();
+
+		List<DiffEntry> diffs;
+		try (TreeWalk treeWalk = new TreeWalk(objectReader)) {
+			treeWalk.addTree(oldTree == null ? new EmptyTreeIterator() : new CanonicalTreeParser(null, objectReader, oldTree));
+			treeWalk.addTree(new CanonicalTreeParser(null, objectReader, newTree));
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			diffs = DiffEntry.scan(treeWalk);
+		}
+
+		Renames renames = renameCache.detectRenames(repo, objectReader, diffs, session.getOptions());
+
+		return new Renames(renames.getEntries().stream()
+			.filter(diffEntry -> isBlob(objectReader, diffEntry))
+			.collect(Collectors.toList()), renames.isComplete());
+	}
+
 	@SneakyThrows
 	private boolean isBlob(ObjectReader objectReader, DiffEntry diffEntry) {
 		ObjectId objectId = diffEntry.getNewId().toObjectId().equals(ObjectId.zeroId()) ?
@@ -445,13 +982,13 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		return objectReader.has(objectId);
 	}
 
-	protected DiffFile<DiffContext<DiffLine>> transformToDiffFile(DiffEntry input) {
+	protected DiffFile<DiffContext<DiffLine>> transformToDiffFile(DiffSession session, DiffEntry input) {
 		DiffFile<DiffContext<DiffLine>>  diff = new DiffFile<>();
 		diff.setType(convertChangeType(input.getChangeType()));
 		diff.setOldPath(input.getOldPath());
 		diff.setNewPath(input.getNewPath());
 
-		DiffContextFormatter formatter = new DiffContextFormatter(diff, repo);
+		DiffContextFormatter formatter = new DiffContextFormatter(diff, session);
 
 		try {
 			formatter.format(input);
@@ -463,6 +1000,39 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		return diff;
 	}
 
+	protected DiffFile<CompactDiffContext> transformToCompactDiffFile(DiffSession session, DiffEntry input) {
+		DiffFile<CompactDiffContext> diff = new DiffFile<>();
+		diff.setType(convertChangeType(input.getChangeType()));
+		diff.setOldPath(input.getOldPath());
+		diff.setNewPath(input.getNewPath());
+
+		DiffContextFormatter formatter = new DiffContextFormatter(diff, session);
+
+		try {
+			formatter.encode(input);
+		}
+		catch (IOException e) {
+			log.warn(e.getMessage(), e);
+		}
+
+		return diff;
+	}
+
+	protected DiffStatFile transformToDiffStatFile(DiffSession session, DiffEntry input) {
+		DiffFile<DiffContext<DiffLine>> diff = new DiffFile<>();
+		DiffContextFormatter formatter = new DiffContextFormatter(diff, session);
+
+		try {
+			formatter.count(input);
+		}
+		catch (IOException e) {
+			log.warn(e.getMessage(), e);
+		}
+
+		return new DiffStatFile(convertChangeType(input.getChangeType()), input.getOldPath(), input.getNewPath(),
+			diff.getAdditions(), diff.getDeletions());
+	}
+
 	protected nl.tudelft.ewi.git.models.ChangeType convertChangeType(ChangeType changeType) {
 		switch (changeType) {
 			case ADD:
@@ -480,36 +1050,43 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
-	protected CanonicalTreeParser createTreeParser(String ref) throws IOException, GitAPIException {
+	protected RevTree parseTree(RevWalk walk, String ref) throws IOException {
 		assert ref != null && !ref.isEmpty() : "Ref should not be empty or null";
 
-		RevCommit commit;
-		try(RevWalk walk = new RevWalk(repo)) {
-			commit = walk.parseCommit(repo.resolve(ref));
-
-			RevTree commitTree = commit.getTree();
-			RevTree tree = walk.parseTree(commitTree.getId());
+		ObjectId commitId = repo.resolve(ref);
+		if (commitId == null) {
+			throw new NotFoundException("Commit " + ref + " not found");
+		}
+		return walk.parseCommit(commitId).getTree();
+	}
 
-			CanonicalTreeParser oldTreeParser = new CanonicalTreeParser();
-			try(ObjectReader oldReader = repo.newObjectReader()) {
-				oldTreeParser.reset(oldReader, tree.getId());
-			}
+	protected RevCommit parseCommit(RevWalk walk, String ref) throws IOException {
+		assert ref != null && !ref.isEmpty() : "Ref should not be empty or null";
 
-			return oldTreeParser;
-		}
-		catch (MissingObjectException e) {
-			throw new NotFoundException(e.getMessage(), e);
+		ObjectId commitId = repo.resolve(ref);
+		if (commitId == null) {
+			throw new NotFoundException("Commit " + ref + " not found");
 		}
+		return walk.parseCommit(commitId);
 	}
 
-	protected List<RevCommit> commitDifference(String startRef, String endRef) throws IOException {
-		assert !Strings.isNullOrEmpty(startRef) : "Ref should not be empty or null";
-
-		try(RevWalk walk = new RevWalk(repo)) {
-			RevCommit start = walk.parseCommit(repo.resolve(startRef));
-			RevCommit end = endRef == null ? null : walk.parseCommit(repo.resolve(endRef));
-			return RevWalkUtils.find(walk, start, end);
+	/*
+	 * Find the merge base of a commit and master. The walk is reset.
+	 */
+	private RevCommit findMergeBase(RevWalk walk, RevCommit commit) throws IOException {
+		ObjectId master = repo.resolve(REF_MASTER);
+		if (master == null) {
+			throw new NotFoundException("Branch " + REF_MASTER + " not found");
 		}
+
+		walk.reset();
+		walk.setRevFilter(RevFilter.MERGE_BASE);
+		walk.markStart(walk.parseCommit(master));
+		walk.markStart(commit);
+		RevCommit mergeBase = walk.next();
+		walk.reset();
+		walk.setRevFilter(RevFilter.ALL);
+		return mergeBase;
 	}
 
 	@Override
@@ -519,9 +1096,119 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		Preconditions.checkNotNull(commitId);
 		Preconditions.checkNotNull(filePath);
 
+		ObjectId startCommit = resolveCommitId(commitId);
+
+		BlameModel blameModel = blameCache.getIfPresent(startCommit, filePath);
+		if (blameModel == null) {
+			// The blame is the same for every commit in which the file is unchanged
+			ObjectId lastModified = findLastModifyingCommit(startCommit, filePath);
+			if (lastModified != null) {
+				blameModel = blameCache.getIfPresent(lastModified, filePath);
+			}
+
+			if (blameModel == null) {
+				blameModel = computeBlameModel(startCommit, commitId, filePath);
+				if (lastModified != null) {
+					blameCache.put(lastModified, filePath, blameModel);
+				}
+			}
+
+			blameCache.put(startCommit, filePath, blameModel);
+		}
+
+		return forCommit(blameModel, commitId, filePath);
+	}
+
+	@Override
+	public void blame(String commitId, String filePath, BlameBlockConsumer consumer) throws IOException, GitException {
+		Preconditions.checkNotNull(commitId);
+		Preconditions.checkNotNull(filePath);
+		Preconditions.checkNotNull(consumer);
+
+		ObjectId startCommit = resolveCommitId(commitId);
+
+		BlameModel blameModel = blameCache.getIfPresent(startCommit, filePath);
+		if (blameModel != null) {
+			for (BlameBlock blameBlock : blameModel.getBlames()) {
+				consumer.accept(blameBlock);
+			}
+			return;
+		}
+
+		try (BlameGenerator generator = new BlameGenerator(repo, filePath)) {
+			generator.setFollowFileRenames(true);
+			generator.push(null, startCommit);
+
+			if (generator.getResultContents() == null) {
+				throw new NotFoundException(String.format("%s not found in %S at %s", filePath,
+					repository.toString(), commitId));
+			}
+
+			// Every region of the generator is a block of lines from the same commit
+			while (generator.next()) {
+				BlameBlock block = new BlameBlock();
+				block.setFromCommitId(generator.getSourceCommit().getName());
+				block.setSourceFrom(generator.getSourceStart() + 1);
+				block.setDestinationFrom(generator.getResultStart() + 1);
+				block.setFromFilePath(generator.getSourcePath());
+				block.setLength(generator.getRegionLength());
+				consumer.accept(block);
+			}
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public BlameModel blame(String commitId, String filePath, RangeSet<Integer> lines) throws IOException, GitException {
+		Preconditions.checkNotNull(commitId);
+		Preconditions.checkNotNull(filePath);
+		Preconditions.checkNotNull(lines);
+
+		ObjectId startCommit = resolveCommitId(commitId);
+
+		// A blame of the whole file may already be available
+		BlameModel blameModel = blameCache.getIfPresent(startCommit, filePath);
+		if (blameModel != null) {
+			return forCommit(blameModel, commitId, filePath);
+		}
+
+		// The blame is the same for every commit in which the file is unchanged
+		ObjectId lastModified = findLastModifyingCommit(startCommit, filePath);
+		ObjectId blamedCommit = lastModified != null ? lastModified : startCommit;
+		if (lastModified != null) {
+			blameModel = blameCache.getIfPresent(lastModified, filePath);
+			if (blameModel != null) {
+				blameCache.put(startCommit, filePath, blameModel);
+				return forCommit(blameModel, commitId, filePath);
+			}
+		}
+
+		blameModel = blameCache.getIfPresent(blamedCommit, filePath, lines);
+		if (blameModel == null) {
+			blameModel = computeBlameModel(startCommit, commitId, filePath, lines);
+			blameCache.put(blamedCommit, filePath, lines, blameModel);
+		}
+
+		return forCommit(blameModel, commitId, filePath);
+	}
+
+	/*
+	 * The cached model may have been created for another commit.
+	 */
+	private static BlameModel forCommit(BlameModel blameModel, String commitId, String filePath) {
+		BlameModel result = new BlameModel();
+		result.setCommitId(commitId);
+		result.setPath(filePath);
+		result.setBlames(blameModel.getBlames());
+		return result;
+	}
+
+	private BlameModel computeBlameModel(ObjectId startCommit, String commitId, String filePath) {
 		try {
 			BlameResult blameResult = git.blame()
-				.setStartCommit(repo.resolve(commitId))
+				.setStartCommit(startCommit)
 				.setFilePath(filePath)
 				.setFollowFileRenames(true)
 				.call();
@@ -542,22 +1229,88 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
+	/*
+	 * Blame only the requested lines. The generator stops as soon as these lines are attributed,
+	 * so the history before the commits that introduced these lines is not traversed.
+	 */
+	private BlameModel computeBlameModel(ObjectId startCommit, String commitId, String filePath,
+	                                     RangeSet<Integer> lines) throws IOException {
+		try (BlameGenerator generator = new BlameGenerator(repo, filePath)) {
+			generator.setFollowFileRenames(true);
+			generator.push(null, startCommit);
+
+			BlameResult blameResult = BlameResult.create(generator);
+			if (blameResult == null) {
+				throw new NotFoundException(String.format("%s not found in %S at %s", filePath,
+					repository.toString(), commitId));
+			}
+
+			int size = blameResult.getResultContents().size();
+			for (Range<Integer> range : lines.asRanges()) {
+				// Line numbers start at 1, the indices of the blame result at 0
+				int start = Math.max(0, lineNumberFrom(range) - 1);
+				int end = Math.min(size, lineNumberTo(range) - 1);
+				if (start < end) {
+					blameResult.computeRange(start, end);
+				}
+			}
+
+			return transformBlameModel(blameResult, commitId, filePath);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+	}
+
+	private static int lineNumberFrom(Range<Integer> range) {
+		return range.lowerBoundType() == BoundType.CLOSED ? range.lowerEndpoint() : range.lowerEndpoint() + 1;
+	}
+
+	private static int lineNumberTo(Range<Integer> range) {
+		return range.upperBoundType() == BoundType.OPEN ? range.upperEndpoint() : range.upperEndpoint() + 1;
+	}
+
+	/*
+	 * Find the most recent commit that modified a file, or null if the file does not exist.
+	 */
+	private ObjectId findLastModifyingCommit(ObjectId startCommit, String filePath) throws IOException {
+		try (RevWalk walk = new RevWalk(repo)) {
+			walk.setRetainBody(false);
+			walk.setTreeFilter(AndTreeFilter.create(PathFilter.create(filePath), TreeFilter.ANY_DIFF));
+			walk.markStart(walk.parseCommit(startCommit));
+			RevCommit commit = walk.next();
+			return commit == null ? null : commit.copy();
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+	}
+
 	protected BlameModel transformBlameModel(BlameResult input, String commitId, String path) {
 		final BlameModel model = new BlameModel();
 		model.setCommitId(commitId);
 		model.setPath(path);
 		final List<BlameBlock> blames = Lists.<BlameBlock> newArrayList();
+		// Lines are compared by ObjectId, and every commit id is only encoded once
+		final Map<RevCommit, String> commitIds = Maps.newHashMap();
 
 		for(int i = 0, length = input.getResultContents().size(); i < length; i++) {
+			// Lines outside the blamed regions have no source
+			if (!input.hasSourceData(i)) {
+				continue;
+			}
+
+			RevCommit sourceCommit = input.getSourceCommit(i);
 			BlameBlock block = new BlameBlock();
-			block.setFromCommitId(input.getSourceCommit(i).getName());
+			block.setFromCommitId(commitIds.computeIfAbsent(sourceCommit, RevCommit::getName));
 			block.setSourceFrom(input.getSourceLine(i) + 1);
 			block.setDestinationFrom(i + 1);
 			block.setFromFilePath(input.getSourcePath(i));
 			block.setLength(1);
 
 			for(int j = i + 1; j < length &&
-				equalCommitId(input, j, block) &&
+				input.hasSourceData(j) &&
+				sourceCommit.equals(input.getSourceCommit(j)) &&
 				nextLineNumberInBlock(input, j, block); j++) {
 				i++;
 				block.incrementLength();
@@ -570,29 +1323,37 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		return model;
 	}
 
-	private static boolean equalCommitId(BlameResult input, int index, BlameBlock block) {
-		return input.getSourceCommit(index).getName().equals(block.getFromCommitId());
-	}
-
 	private static boolean nextLineNumberInBlock(BlameResult input, int index, BlameBlock block) {
 		return block.getSourceFrom() + block.getLength() == input.getSourceLine(index) + 1;
 	}
 
 	@Override
 	public DiffBlameModel addBlameData(DiffModel input) {
+		return addBlameData(input, () -> false);
+	}
+
+	@Override
+	public DiffBlameModel addBlameData(DiffModel input, BooleanSupplier cancelled) {
 		DiffBlameModel result = new DiffBlameModel();
 		result.setOldCommit(input.getOldCommit());
 		result.setNewCommit(input.getNewCommit());
 		result.setCommits(input.getCommits());
+		result.setCommitsCursor(input.getCommitsCursor());
 
-		result.setDiffs(input.getDiffs().parallelStream().map((diffFile) -> {
-			BlameModel oldBlame = (!diffFile.isAdded()) ? getBlameModel(input.getOldCommit().getCommit(), diffFile.getOldPath(), diffFile) : null;
-			BlameModel newBlame = (!diffFile.isDeleted()) ? getBlameModel(input.getNewCommit().getCommit(), diffFile.getNewPath(), diffFile) : null;
+		result.setDiffs(blameExecutor.map(input.getDiffs(), (diffFile) -> {
+			// Only the lines shown in the diff are blamed. Truncated files have no lines to blame
+			RangeSet<Integer> oldLines = blamedLines(diffFile, true);
+			RangeSet<Integer> newLines = blamedLines(diffFile, false);
+			BlameModel oldBlame = !oldLines.isEmpty() ? getBlameModel(input.getOldCommit().getCommit(), diffFile.getOldPath(), diffFile, oldLines) : null;
+			BlameModel newBlame = !newLines.isEmpty() ? getBlameModel(input.getNewCommit().getCommit(), diffFile.getNewPath(), diffFile, newLines) : null;
 
 			DiffFile<DiffContext<DiffBlameLine>> diffBlameFile = new DiffFile<>();
 			diffBlameFile.setNewPath(diffFile.getNewPath());
 			diffBlameFile.setOldPath(diffFile.getOldPath());
 			diffBlameFile.setType(diffFile.getType());
+			diffBlameFile.setTruncated(diffFile.isTruncated());
+			diffBlameFile.setAdditions(diffFile.getAdditions());
+			diffBlameFile.setDeletions(diffFile.getDeletions());
 
 
 
@@ -628,7 +1389,7 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 
 			return diffBlameFile;
 
-		}).collect(Collectors.toList()));
+		}, cancelled));
 
 		return result;
 	}
@@ -642,9 +1403,9 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 	 *    (Diff returns a file containing the symlink target, but while debugging
 	 *    blame, the object points to another blob object - the reference).
 	 */
-	private BlameModel getBlameModel(String commit, String path, DiffFile file) {
+	private BlameModel getBlameModel(String commit, String path, DiffFile file, RangeSet<Integer> lines) {
 		try {
-			return blame(commit, path);
+			return blame(commit, path, lines);
 		}
 		catch (NotFoundException e) {
 			return fallbackBlameModel(commit, path, file.isAdded() ? file.getLinesAdded() : file.getLinesRemoved());
@@ -655,6 +1416,26 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
+	/*
+	 * The removed lines are blamed in the old file, the other lines in the new file.
+	 */
+	private static RangeSet<Integer> blamedLines(DiffFile<DiffContext<DiffLine>> diffFile, boolean removed) {
+		RangeSet<Integer> lines = TreeRangeSet.create();
+		if (diffFile.getContexts() == null) {
+			return lines;
+		}
+
+		for (DiffContext<DiffLine> context : diffFile.getContexts()) {
+			for (DiffLine line : context.getLines()) {
+				if (line.isRemoved() == removed) {
+					int lineNumber = removed ? line.getOldLineNumber() : line.getNewLineNumber();
+					lines.add(Range.closedOpen(lineNumber, lineNumber + 1));
+				}
+			}
+		}
+		return lines;
+	}
+
 	/*
 	 * The fallback BlameModel is a blame model that acts as if all lines for the
 	 * specified path were introduced at the specified commit.
@@ -673,57 +1454,33 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		return blameModel;
 	}
 
-	private static EntryType of(org.eclipse.jgit.lib.Repository repo, TreeWalk walker, String entry) throws IOException {
-		if (entry.endsWith("/")) {
-			return EntryType.FOLDER;
-		}
-
-		ObjectId objectId = walker.getObjectId(0);
-		ObjectLoader loader = repo.open(objectId);
-		try (ObjectStream stream = loader.openStream()) {
-			if (RawText.isBinary(stream)) {
-				return EntryType.BINARY;
-			}
-			return EntryType.TEXT;
-		}
-	}
-
 	@Override
 	public Map<String, EntryType> showTree(String commitId, String path)  throws GitException, IOException {
 		Preconditions.checkArgument(!Strings.isNullOrEmpty(commitId));
 		Preconditions.checkNotNull(path);
 
-		try(RevWalk revWalk = new RevWalk(repo);
-		    TreeWalk walker = new TreeWalk(repo)) {
+		ObjectId commit = repo.resolve(commitId);
+		if (commit == null) {
+			throw new NotFoundException("Commit " + commitId + " not found");
+		}
 
-			walker.setFilter(TreeFilter.ALL);
-			RevTree tree = revWalk.parseCommit(repo.resolve(commitId)).getTree();
-			walker.addTree(tree);
-			walker.setRecursive(true);
+		try(ObjectReader objectReader = repo.newObjectReader();
+		    RevWalk revWalk = new RevWalk(objectReader);
+		    TreeWalk walker = new TreeWalk(objectReader)) {
 
-			if (!path.endsWith("/") && !Strings.isNullOrEmpty(path)) {
-				path += "/";
-			}
+			walker.addTree(findTree(objectReader, revWalk.parseCommit(commit).getTree(), path));
+			walker.setRecursive(false);
 
 			Map<String, EntryType> handles = Maps.newLinkedHashMap();
 			while (walker.next()) {
-				String entryPath = walker.getPathString();
-				// Skip entries not in path
-				if (!entryPath.startsWith(path)) {
-					continue;
+				FileMode fileMode = walker.getFileMode(0);
+				if (FileMode.TREE.equals(fileMode)) {
+					handles.put(walker.getNameString() + "/", EntryType.FOLDER);
 				}
-
 				// Skip commit objects...
-				if (!walker.getObjectReader().has(walker.getObjectId(0))) {
-					continue;
+				else if (!FileMode.GITLINK.equals(fileMode)) {
+					handles.put(walker.getNameString(), entryTypeCache.get(objectReader, walker.getObjectId(0)));
 				}
-
-				String entry = entryPath.substring(path.length());
-				if (entry.contains("/")) {
-					entry = entry.substring(0, entry.indexOf('/') + 1);
-				}
-
-				handles.put(entry, of(repo, walker, entry));
 			}
 
 			if (handles.isEmpty()) {
@@ -737,31 +1494,62 @@ public class JGitRepositoryFacade implements RepositoryFacade {
 		}
 	}
 
+	/*
+	 * Find the tree for a directory, without walking the trees outside the path to the directory.
+	 */
+	private static ObjectId findTree(ObjectReader objectReader, RevTree root, String path) throws IOException {
+		while (path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+
+		if (path.isEmpty()) {
+			return root;
+		}
+
+		try (TreeWalk treeWalk = TreeWalk.forPath(objectReader, path, root)) {
+			if (treeWalk == null || !FileMode.TREE.equals(treeWalk.getFileMode(0))) {
+				throw new NotFoundException("Folder " + path + " not found");
+			}
+			return treeWalk.getObjectId(0);
+		}
+	}
+
 	@Override
 	public ObjectLoader showFile(final String commitId, final String path) throws IOException, GitException {
+		return showFile(resolveFile(commitId, path));
+	}
+
+	@Override
+	public ObjectId resolveFile(final String commitId, final String path) throws IOException, GitException {
 		Preconditions.checkNotNull(commitId);
 		Preconditions.checkNotNull(path);
 
-		try(RevWalk revWalk = new RevWalk(repo);
-		    TreeWalk walker = new TreeWalk(repo)) {
-
-			walker.setFilter(TreeFilter.ALL);
-			RevTree tree = revWalk.parseCommit(repo.resolve(commitId)).getTree();
-			walker.addTree(tree);
-			walker.setRecursive(true);
+		ObjectId commit = repo.resolve(commitId);
+		if (commit == null) {
+			throw new NotFoundException("Commit " + commitId + " not found");
+		}
 
-			while (walker.next()) {
-				String entryPath = walker.getPathString();
-				if (!entryPath.startsWith(path)) {
-					continue;
-				}
+		try(ObjectReader objectReader = repo.newObjectReader();
+		    RevWalk revWalk = new RevWalk(objectReader);
+		    TreeWalk walker = TreeWalk.forPath(objectReader, path, revWalk.parseCommit(commit).getTree())) {
 
-				ObjectId objectId = walker.getObjectId(0);
-				ObjectLoader loader = repo.open(objectId);
-				return loader;
+			if (walker == null || walker.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+				throw new NotFoundException("File " + path + " not found in commit " + commitId);
 			}
 
-			throw new NotFoundException("File " + path + " not found in commit " + commitId);
+			return walker.getObjectId(0);
+		}
+		catch (MissingObjectException e) {
+			throw new NotFoundException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public ObjectLoader showFile(final ObjectId blobId) throws IOException, GitException {
+		Preconditions.checkNotNull(blobId);
+
+		try {
+			return repo.open(blobId, Constants.OBJ_BLOB);
 		}
 		catch (MissingObjectException e) {
 			throw new NotFoundException(e.getMessage(), e);
@@ -1,51 +1,126 @@
 package nl.tudelft.ewi.git.backend;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.inspector.DiffLimits;
 import nl.tudelft.ewi.git.web.api.Transformers;
 import nl.tudelft.ewi.gitolite.repositories.Repository;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Pool of opened {@link JGitRepositoryFacade JGitRepositoryFacades}.
+ *
+ * The pool holds a reference to every handle it caches. A handle that is evicted, either because
+ * the pool is full or because it has been idle for too long, is only closed once the last request
+ * that is still using it closes it as well.
+ *
  * @author Jan-Willem Gmelig Meyling
  */
+@Slf4j
 @Singleton
 public class JGitRepositoryFacadeFactory implements RepositoryFacadeFactory {
 
+	private static final String COMMIT_COUNT_FILE = "commit-counts";
+
 	private final Transformers transformers;
-	private final WeakHashMap<URI, JGitRepositoryFacade> cache = new WeakHashMap<>();
+	private final CommitModelCache commitModelCache;
+	private final DiffCache diffCache;
+	private final DiffStatCache diffStatCache;
+	private final RenameCache renameCache;
+	private final BlameCache blameCache;
+	private final EntryTypeCache entryTypeCache;
+	private final DiffExecutor diffExecutor;
+	private final BlameExecutor blameExecutor;
+	private final DiffLimits diffLimits;
+	private final File commitCountDirectory;
+	private final Cache<URI, JGitRepositoryFacade> cache;
 
 	@Inject
-	public JGitRepositoryFacadeFactory(Transformers transformers) {
+	public JGitRepositoryFacadeFactory(Config config, Transformers transformers, CommitModelCache commitModelCache,
+	                                   DiffCache diffCache, DiffStatCache diffStatCache, RenameCache renameCache,
+	                                   BlameCache blameCache, EntryTypeCache entryTypeCache, DiffExecutor diffExecutor,
+	                                   BlameExecutor blameExecutor) {
 		this.transformers = transformers;
+		this.commitModelCache = commitModelCache;
+		this.diffCache = diffCache;
+		this.diffStatCache = diffStatCache;
+		this.renameCache = renameCache;
+		this.blameCache = blameCache;
+		this.entryTypeCache = entryTypeCache;
+		this.diffExecutor = diffExecutor;
+		this.blameExecutor = blameExecutor;
+		this.diffLimits = new DiffLimits(config.getDiffFileLineLimit(), config.getDiffFileByteLimit(),
+			config.getDiffLineBudget());
+		this.commitCountDirectory = config.getCommitCountDirectory();
+		this.cache = CacheBuilder.newBuilder()
+			.maximumSize(config.getMaxOpenRepositories())
+			.expireAfterAccess(config.getRepositoryIdleTimeout(), TimeUnit.SECONDS)
+			.<URI, JGitRepositoryFacade> removalListener(this::onRemoval)
+			.recordStats()
+			.build();
 	}
 
 	@Override
 	public JGitRepositoryFacade create(Repository repository) throws IOException {
 		URI uri = repository.getURI();
-		JGitRepositoryFacade jGitRepositoryFacade = cache.get(uri);
-
-		if (jGitRepositoryFacade != null) {
-			synchronized (jGitRepositoryFacade) {
-				if (!jGitRepositoryFacade.isClosed()) {
-					jGitRepositoryFacade.incrementUses();
-				}
-				else {
-					jGitRepositoryFacade = null;
-					cache.remove(uri);
-				}
+
+		while (true) {
+			JGitRepositoryFacade jGitRepositoryFacade;
+			try {
+				jGitRepositoryFacade = cache.get(uri, () ->
+					new JGitRepositoryFacade(transformers, commitModelCache, diffCache, diffStatCache,
+						renameCache, blameCache, entryTypeCache, diffExecutor, blameExecutor, diffLimits,
+						commitCountFile(uri), repository));
+			}
+			catch (ExecutionException e) {
+				throw new IOException(e.getCause().getMessage(), e.getCause());
 			}
-		}
 
-		if (jGitRepositoryFacade == null) {
-			jGitRepositoryFacade = new JGitRepositoryFacade(transformers, repository);
-			cache.put(uri, jGitRepositoryFacade);
+			if (jGitRepositoryFacade.incrementUses()) {
+				return jGitRepositoryFacade;
+			}
+
+			// The handle was closed between the lookup and the increment, try again with a fresh one
+			cache.asMap().remove(uri, jGitRepositoryFacade);
 		}
+	}
+
+	@Override
+	public void invalidate(Repository repository) {
+		cache.invalidate(repository.getURI());
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the repository pool.
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	/*
+	 * The commit count index is stored in the data directory of the server, rather than in the
+	 * repository, which is managed by Gitolite.
+	 */
+	private File commitCountFile(URI uri) {
+		return new File(commitCountDirectory, uri.toString() + COMMIT_COUNT_FILE);
+	}
 
-		return jGitRepositoryFacade;
+	private void onRemoval(RemovalNotification<URI, JGitRepositoryFacade> notification) {
+		log.debug("Releasing repository {} ({}), pool statistics: {}", notification.getKey(),
+			notification.getCause(), cache.stats());
+		// Release the reference held by the pool, the handle closes as soon as it is no longer in use
+		notification.getValue().close();
 	}
 
 }
@@ -0,0 +1,416 @@
+package nl.tudelft.ewi.git.backend;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects renamed and copied files in a diff, and caches the similarity scores of the renames that
+ * were found, keyed by the pair of blobs. When the same blobs are added and deleted in a later diff,
+ * for example in a diff over an overlapping range of commits, they are paired from the cache instead
+ * of being compared again.
+ *
+ * The pairs of blobs that were compared but not found to be a rename are cached as well, with the
+ * rename score they did not reach. Added files that are known not to be renamed from any of the
+ * deleted files, and the other way around, are left out of the comparison.
+ *
+ * Detecting renames by content compares every added file with every deleted file. This is bounded by
+ * the rename limit of the {@link DiffOptions}, and by a time budget. When the budget is exceeded, the
+ * remaining files are returned as separate additions and deletions, and the result is marked as
+ * incomplete. An incomplete result depends on the load of the server, and thus should not be cached.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Slf4j
+@Singleton
+public class RenameCache {
+
+	/*
+	 * Same order as the result of a RenameDetector: by path, then deletions before additions before
+	 * any other change type.
+	 */
+	private static final Comparator<DiffEntry> DIFF_COMPARATOR = Comparator
+		.comparing((DiffEntry entry) -> entry.getChangeType() == ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath())
+		.thenComparingInt(entry -> sortOf(entry.getChangeType()));
+
+	/*
+	 * A single diff may use at most this fraction of the cache for the pairs that are not renamed,
+	 * so that a large diff does not evict the renames of other diffs.
+	 */
+	private static final int UNPAIRED_CACHE_FRACTION = 10;
+
+	private final Cache<Key, Score> scores;
+	private final long maximumUnpairedPerDiff;
+	private final long timeout;
+
+	@Inject
+	public RenameCache(Config config) {
+		this.scores = CacheBuilder.newBuilder()
+			.maximumSize(config.getRenameCacheSize())
+			.recordStats()
+			.build();
+		this.maximumUnpairedPerDiff = config.getRenameCacheSize() / UNPAIRED_CACHE_FRACTION;
+		this.timeout = TimeUnit.MILLISECONDS.toNanos(config.getRenameTimeout());
+	}
+
+	/**
+	 * Detect the renamed and copied files in a diff.
+	 *
+	 * @param repository Repository for the diff.
+	 * @param reader ObjectReader to read the blobs with.
+	 * @param entries The changed files, as scanned from the trees.
+	 * @param options {@link DiffOptions} for the rename detection.
+	 * @return the changed files, in which added and deleted files may be combined into renames and copies.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public Renames detectRenames(Repository repository, ObjectReader reader, List<DiffEntry> entries,
+	                                     DiffOptions options) throws IOException {
+		Preconditions.checkArgument(options.getRenameScore() >= 0 && options.getRenameScore() <= 100,
+			"Rename score should be between 0 and 100");
+		Preconditions.checkArgument(options.getRenameLimit() >= 0, "Rename limit should be non-negative");
+
+		if (!options.isDetectRenames()) {
+			return new Renames(entries, true);
+		}
+
+		List<DiffEntry> result = Lists.newArrayListWithCapacity(entries.size());
+		List<DiffEntry> added = Lists.newArrayList();
+		List<DiffEntry> deleted = Lists.newArrayList();
+
+		for (DiffEntry entry : entries) {
+			switch (entry.getChangeType()) {
+				case ADD:
+					added.add(entry);
+					break;
+				case DELETE:
+					deleted.add(entry);
+					break;
+				default:
+					result.add(entry);
+					break;
+			}
+		}
+
+		if (added.isEmpty() || deleted.isEmpty()) {
+			return new Renames(entries, true);
+		}
+
+		if (!isOverRenameLimit(added, deleted, options)) {
+			result.addAll(pairCachedRenames(added, deleted, options));
+			result.addAll(removeCachedUnpaired(added, deleted, options));
+		}
+
+		boolean complete = true;
+		if (!added.isEmpty() && !deleted.isEmpty()) {
+			List<DiffEntry> detected = compute(repository, reader, added, deleted, options);
+			if (detected != null) {
+				store(detected, added, deleted, options);
+				result.addAll(detected);
+			}
+			else {
+				complete = false;
+				result.addAll(added);
+				result.addAll(deleted);
+			}
+		}
+		else {
+			result.addAll(added);
+			result.addAll(deleted);
+		}
+
+		result.sort(DIFF_COMPARATOR);
+		return new Renames(result, complete);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for the cache.
+	 */
+	public CacheStats getStatistics() {
+		return scores.stats();
+	}
+
+	private static int sortOf(ChangeType changeType) {
+		switch (changeType) {
+			case DELETE:
+				return 1;
+			case ADD:
+				return 2;
+			default:
+				return 10;
+		}
+	}
+
+	private static boolean isOverRenameLimit(List<DiffEntry> added, List<DiffEntry> deleted, DiffOptions options) {
+		long limit = options.getRenameLimit();
+		return limit != 0 && (long) added.size() * deleted.size() > limit * limit;
+	}
+
+	/*
+	 * Pair the added and deleted files of which the blobs were found to be a rename before. The
+	 * paired files are removed from the lists.
+	 */
+	private List<DiffEntry> pairCachedRenames(List<DiffEntry> added, List<DiffEntry> deleted, DiffOptions options) {
+		List<DiffEntry> renames = Lists.newArrayList();
+
+		for (Iterator<DiffEntry> addedIterator = added.iterator(); addedIterator.hasNext();) {
+			DiffEntry dst = addedIterator.next();
+			ObjectId newId = dst.getNewId().toObjectId();
+
+			for (Iterator<DiffEntry> deletedIterator = deleted.iterator(); deletedIterator.hasNext();) {
+				DiffEntry src = deletedIterator.next();
+				Score score = scores.getIfPresent(new Key(src.getOldId().toObjectId(), newId));
+
+				if (score != null && score.isRename(options.getRenameScore())) {
+					renames.add(new CachedRename(src, dst, score.getValue()));
+					addedIterator.remove();
+					deletedIterator.remove();
+					break;
+				}
+			}
+		}
+
+		return renames;
+	}
+
+	/*
+	 * Remove the added files that are known not to be renamed from any of the deleted files, and
+	 * then the deleted files that are known not to be renamed to any of the remaining added files.
+	 * These files never take part in a rename, so the removed files are returned as they are.
+	 */
+	private List<DiffEntry> removeCachedUnpaired(List<DiffEntry> added, List<DiffEntry> deleted, DiffOptions options) {
+		List<DiffEntry> unpaired = Lists.newArrayList();
+
+		for (Iterator<DiffEntry> iterator = added.iterator(); iterator.hasNext();) {
+			DiffEntry dst = iterator.next();
+			if (deleted.stream().allMatch(src -> isCachedUnpaired(src, dst, options))) {
+				unpaired.add(dst);
+				iterator.remove();
+			}
+		}
+
+		for (Iterator<DiffEntry> iterator = deleted.iterator(); iterator.hasNext();) {
+			DiffEntry src = iterator.next();
+			if (added.stream().allMatch(dst -> isCachedUnpaired(src, dst, options))) {
+				unpaired.add(src);
+				iterator.remove();
+			}
+		}
+
+		return unpaired;
+	}
+
+	private boolean isCachedUnpaired(DiffEntry src, DiffEntry dst, DiffOptions options) {
+		Score score = scores.getIfPresent(new Key(src.getOldId().toObjectId(), dst.getNewId().toObjectId()));
+		return score != null && score.isBelow(options.getRenameScore());
+	}
+
+	/*
+	 * Detect the renames between the added and deleted files, or return null when the time budget
+	 * was exceeded.
+	 */
+	private List<DiffEntry> compute(Repository repository, ObjectReader reader, List<DiffEntry> added,
+	                                List<DiffEntry> deleted, DiffOptions options) throws IOException {
+		RenameDetector renameDetector = new RenameDetector(repository);
+		renameDetector.setRenameLimit(options.getRenameLimit());
+		renameDetector.setRenameScore(options.getRenameScore());
+		renameDetector.addAll(added);
+		renameDetector.addAll(deleted);
+
+		try {
+			return renameDetector.compute(reader, new DeadlineMonitor(System.nanoTime() + timeout));
+		}
+		catch (DeadlineExceededException e) {
+			log.info("Rename detection for {} added and {} deleted files exceeded its budget of {} ms",
+				added.size(), deleted.size(), TimeUnit.NANOSECONDS.toMillis(timeout));
+			return null;
+		}
+	}
+
+	/*
+	 * Store the scores of the renames. Copies are not stored: the cache only pairs added files with
+	 * deleted files, and such a pair is always a rename.
+	 *
+	 * The RenameDetector pairs every added file with its most similar deleted file that reaches the
+	 * rename score, so an added file that is left unpaired did not reach the rename score with any
+	 * of the deleted files. This does not hold for a deleted file, which may have lost its added file
+	 * to a more similar deleted file. A pair of a file and a symbolic link is never compared, and thus
+	 * not stored either.
+	 */
+	private void store(List<DiffEntry> entries, List<DiffEntry> added, List<DiffEntry> deleted, DiffOptions options) {
+		List<DiffEntry> unpaired = Lists.newArrayList();
+
+		for (DiffEntry entry : entries) {
+			if (entry.getChangeType() == ChangeType.RENAME) {
+				scores.put(new Key(entry.getOldId().toObjectId(), entry.getNewId().toObjectId()),
+					new Score(entry.getScore(), true));
+			}
+			else if (entry.getChangeType() == ChangeType.ADD) {
+				unpaired.add(entry);
+			}
+		}
+
+		// Over the rename limit, the RenameDetector does not compare the contents at all
+		int limit = options.getRenameLimit();
+		if ((limit != 0 && Math.max(added.size(), deleted.size()) > limit)
+			|| (long) unpaired.size() * deleted.size() > maximumUnpairedPerDiff) {
+			return;
+		}
+
+		Score below = new Score(options.getRenameScore(), false);
+		for (DiffEntry dst : unpaired) {
+			for (DiffEntry src : deleted) {
+				if (isSameType(src.getOldMode(), dst.getNewMode())) {
+					scores.asMap().merge(new Key(src.getOldId().toObjectId(), dst.getNewId().toObjectId()),
+						below, Score::merge);
+				}
+			}
+		}
+	}
+
+	private static boolean isSameType(FileMode a, FileMode b) {
+		return (a.getBits() & FileMode.TYPE_MASK) == (b.getBits() & FileMode.TYPE_MASK);
+	}
+
+	/**
+	 * The result of the rename detection for a diff.
+	 */
+	@Value
+	public static class Renames {
+
+		/**
+		 * The changed files, in which added and deleted files may be combined into renames and copies.
+		 */
+		List<DiffEntry> entries;
+
+		/**
+		 * Whether the rename detection finished within its time budget. When it did not, some renames
+		 * are returned as separate additions and deletions.
+		 */
+		boolean complete;
+
+	}
+
+	@Value
+	private static class Key {
+		ObjectId oldId;
+		ObjectId newId;
+	}
+
+	/**
+	 * The similarity score of a pair of blobs. For a rename, this is the exact score. For a pair that
+	 * is not a rename, this is the rename score that the pair did not reach.
+	 */
+	@Value
+	private static class Score {
+
+		int value;
+
+		boolean exact;
+
+		boolean isRename(int renameScore) {
+			return exact && value >= renameScore;
+		}
+
+		boolean isBelow(int renameScore) {
+			return exact ? value < renameScore : value <= renameScore;
+		}
+
+		/*
+		 * Keep the exact score, or otherwise the lowest rename score that was not reached.
+		 */
+		Score merge(Score other) {
+			if (exact || other.exact) {
+				return exact ? this : other;
+			}
+			return value <= other.value ? this : other;
+		}
+
+	}
+
+	/**
+	 * A rename of which the similarity score was found in the cache.
+	 */
+	private static class CachedRename extends DiffEntry {
+
+		CachedRename(DiffEntry src, DiffEntry dst, int score) {
+			this.changeType = ChangeType.RENAME;
+			this.score = score;
+			this.oldPath = src.getOldPath();
+			this.oldMode = src.getOldMode();
+			this.oldId = src.getOldId();
+			this.newPath = dst.getNewPath();
+			this.newMode = dst.getNewMode();
+			this.newId = dst.getNewId();
+		}
+
+	}
+
+	/**
+	 * The {@link RenameDetector} reports its progress for every pair of files it compares. This
+	 * monitor aborts the comparison when the deadline has passed.
+	 */
+	private static class DeadlineMonitor implements ProgressMonitor {
+
+		private final long deadline;
+
+		DeadlineMonitor(long deadline) {
+			this.deadline = deadline;
+		}
+
+		@Override
+		public void start(int totalTasks) {
+		}
+
+		@Override
+		public void beginTask(String title, int totalWork) {
+		}
+
+		@Override
+		public void update(int completed) {
+			if (System.nanoTime() - deadline > 0) {
+				throw new DeadlineExceededException();
+			}
+		}
+
+		@Override
+		public void endTask() {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return System.nanoTime() - deadline > 0;
+		}
+
+	}
+
+	private static class DeadlineExceededException extends RuntimeException {
+
+		DeadlineExceededException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+}
@@ -1,21 +1,33 @@
 package nl.tudelft.ewi.git.backend;
 
+import com.google.common.collect.RangeSet;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
 import nl.tudelft.ewi.git.models.BlameModel;
+import nl.tudelft.ewi.git.models.BlameModel.BlameBlock;
 import nl.tudelft.ewi.git.models.BranchModel;
 import nl.tudelft.ewi.git.models.CommitModel;
 import nl.tudelft.ewi.git.models.CommitSubList;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
 import nl.tudelft.ewi.git.models.DetailedCommitModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel;
 import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffStatModel;
 import nl.tudelft.ewi.git.models.EntryType;
+import nl.tudelft.ewi.git.models.RefListOptions;
+import nl.tudelft.ewi.git.models.RepositoryFields;
 import nl.tudelft.ewi.git.models.TagModel;
 import nl.tudelft.ewi.gitolite.git.GitException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 /**
  * The {@link RepositoryFacade} combines Git interaction frameworks and maps them to an interface
@@ -31,9 +43,10 @@ public interface RepositoryFacade extends AutoCloseable {
 	/**
 	 * Get a description of this {@link DetailedRepositoryModel}.
 	 *
+	 * @param fields The attributes to include. Attributes that are not requested are not computed.
 	 * @return the {@code DetailedRepositoryModel}.
 	 */
-	DetailedRepositoryModel getRepositoryModel();
+	DetailedRepositoryModel getRepositoryModel(RepositoryFields fields);
 
 	/**
 	 * List the branches for this repository.
@@ -42,6 +55,14 @@ public interface RepositoryFacade extends AutoCloseable {
 	 */
 	Collection<BranchModel> getBranches();
 
+	/**
+	 * List a page of the branches for this repository.
+	 *
+	 * @param options {@link RefListOptions} for the order and page of the branches.
+	 * @return A list of {@link BranchModel BranchModels}.
+	 */
+	Collection<BranchModel> getBranches(RefListOptions options);
+
 	/**
 	 * List the tags for this repository.
 	 *
@@ -50,10 +71,21 @@ public interface RepositoryFacade extends AutoCloseable {
 	Collection<TagModel> getTags();
 
 	/**
-	 * Get a specific branch.
+	 * List a page of the tags for this repository.
+	 *
+	 * @param options {@link RefListOptions} for the order and page of the tags.
+	 * @return A List of {@link TagModel TagModels}.
+	 */
+	Collection<TagModel> getTags(RefListOptions options);
+
+	/**
+	 * Get a specific branch. The branch is looked up by its full name, or by its name relative to
+	 * {@code refs/heads/} or {@code refs/remotes/}. If no such branch exists, the first branch of
+	 * which the name ends with the given name is returned.
 	 *
 	 * @param name string that the actual branch name should contain (for example: master).
 	 * @return the {@link BranchModel}.
+	 * @throws javax.ws.rs.NotFoundException If no branch matches the name.
 	 */
 	BranchModel getBranch(String name);
 
@@ -98,6 +130,15 @@ public interface RepositoryFacade extends AutoCloseable {
 	 */
 	CommitModel mergeBase(String branchName);
 
+	/**
+	 * Resolve the commit of a branch, without computing its {@link BranchModel}. The branch is looked
+	 * up like {@link #getBranch(String)}.
+	 *
+	 * @param branchName Name of the branch, for example {@code master} or {@code refs/heads/master}.
+	 * @return the {@link ObjectId} of the commit the branch points to.
+	 */
+	ObjectId resolveBranch(String branchName);
+
 	/**
 	 * Delete a branch.
 	 *
@@ -111,9 +152,87 @@ public interface RepositoryFacade extends AutoCloseable {
 	 * @param leftCommitId First commit id.
 	 * @param rightCommitId Second commit id - may be null.
 	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @return A {@link DiffModel} containing the diff response.
+	 */
+	DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines, DiffOptions options);
+
+	/**
+	 * Calculate the diff between a branch and its merge base with master. The branch, the merge
+	 * base and the diff are resolved within a single walk.
+	 *
+	 * @param branchName Name of the branch.
+	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
 	 * @return A {@link DiffModel} containing the diff response.
 	 */
-	DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines);
+	DiffModel calculateBranchDiff(String branchName, int contextLines, DiffOptions options);
+
+	/**
+	 * Calculate the diff between two commits as a {@link CompactDiffModel}. The contexts are encoded
+	 * directly from the edits, without creating the lines of a {@link DiffModel} first.
+	 *
+	 * @param leftCommitId First commit id.
+	 * @param rightCommitId Second commit id - may be null.
+	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @return A {@link CompactDiffModel} containing the diff response.
+	 * @see #calculateDiff(String, String, int, DiffOptions)
+	 */
+	CompactDiffModel calculateCompactDiff(String leftCommitId, String rightCommitId, int contextLines, DiffOptions options);
+
+	/**
+	 * Calculate the diff between a branch and its merge base with master as a {@link CompactDiffModel}.
+	 *
+	 * @param branchName Name of the branch.
+	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @return A {@link CompactDiffModel} containing the diff response.
+	 * @see #calculateBranchDiff(String, int, DiffOptions)
+	 */
+	CompactDiffModel calculateCompactBranchDiff(String branchName, int contextLines, DiffOptions options);
+
+	/**
+	 * Calculate a diff between two commits, passing the changed files to a consumer as they are
+	 * formatted, instead of collecting them in the {@link DiffModel}.
+	 *
+	 * @param leftCommitId First commit id.
+	 * @param rightCommitId Second commit id - may be null.
+	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @param consumer Consumer for the changed files.
+	 * @return A {@link DiffModel} without the changed files.
+	 * @throws IOException If an I/O error occurs, or the consumer failed.
+	 * @see #calculateDiff(String, String, int, DiffOptions)
+	 */
+	DiffModel calculateDiff(String leftCommitId, String rightCommitId, int contextLines,
+	                        DiffOptions options, DiffFileConsumer consumer) throws IOException;
+
+	/**
+	 * Calculate the amount of added and removed lines per changed file between two commits, without
+	 * creating the lines themselves.
+	 *
+	 * @param leftCommitId First commit id - may be null.
+	 * @param rightCommitId Second commit id.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @return A {@link DiffStatModel} for the changed files.
+	 */
+	DiffStatModel calculateDiffStat(String leftCommitId, String rightCommitId, DiffOptions options);
+
+	/**
+	 * Calculate the diff for a single file between two commits. Unlike {@link #calculateDiff(String,
+	 * String, int, DiffOptions)}, the file is not truncated when it exceeds the size limits for a diff.
+	 *
+	 * @param leftCommitId First commit id - may be null.
+	 * @param rightCommitId Second commit id.
+	 * @param path Old or new path of the file.
+	 * @param contextLines Amount of context lines around added/removed blocks.
+	 * @param options {@link DiffOptions} for the diff algorithm and whitespace handling.
+	 * @return the {@link DiffFile} for the file.
+	 * @throws javax.ws.rs.NotFoundException If the file is not changed between the commits.
+	 */
+	DiffFile<DiffContext<DiffLine>> calculateDiffFile(String leftCommitId, String rightCommitId, String path,
+	                                                  int contextLines, DiffOptions options);
 
 	/**
 	 * Calculate the blame for a file at a specific version.
@@ -127,17 +246,58 @@ public interface RepositoryFacade extends AutoCloseable {
 	BlameModel blame(String commitId,
 	                 String filePath) throws IOException, GitException;
 
+	/**
+	 * Calculate the blame for a file at a specific version, passing the blocks to a consumer as they
+	 * are attributed. The blocks are not ordered by line number, and adjacent blocks from the same
+	 * commit are not combined.
+	 *
+	 * @param commitId Commit id.
+	 * @param filePath Path to the file.
+	 * @param consumer Consumer for the blocks. If the consumer fails, the blame is stopped.
+	 * @throws IOException If an I/O error occurs, or the consumer failed.
+	 * @throws GitException If an GitException occurs.
+	 * @see #blame(String, String)
+	 */
+	void blame(String commitId, String filePath, BlameBlockConsumer consumer) throws IOException, GitException;
+
+	/**
+	 * Calculate the blame for some lines of a file at a specific version. Only the history that is
+	 * needed to attribute these lines is traversed, so the model may lack blocks for other lines.
+	 *
+	 * @param commitId Commit id.
+	 * @param filePath Path to the file.
+	 * @param lines Line numbers to blame, starting at 1.
+	 * @return {@link BlameModel} response.
+	 * @throws IOException If an I/O error occurs.
+	 * @throws GitException If an GitException occurs.
+	 * @see #blame(String, String)
+	 */
+	BlameModel blame(String commitId, String filePath, RangeSet<Integer> lines) throws IOException, GitException;
+
 	/**
 	 * Add blame data to a {@link DiffModel}.
 	 *
 	 * @param input {@code DiffModel} to transform.
 	 * @return a {@link DiffBlameModel} that combines data from the {@link DiffModel} with data from the
 	 *    {@link BlameModel BlameModels} of the edited files.
-	 * @see #calculateDiff(String, String, int)
+	 * @see #calculateDiff(String, String, int, DiffOptions)
 	 * @see #blame(String, String)
 	 */
 	DiffBlameModel addBlameData(DiffModel input);
 
+	/**
+	 * Add blame data to a {@link DiffModel}. The files are blamed in parallel, on the threads of the
+	 * {@link BlameExecutor}.
+	 *
+	 * @param input {@code DiffModel} to transform.
+	 * @param cancelled Whether the request is cancelled, after which the remaining files are skipped.
+	 * @return a {@link DiffBlameModel} that combines data from the {@link DiffModel} with data from the
+	 *    {@link BlameModel BlameModels} of the edited files.
+	 * @throws java.util.concurrent.CancellationException If the request was cancelled.
+	 * @see #addBlameData(DiffModel)
+	 */
+	DiffBlameModel addBlameData(DiffModel input, BooleanSupplier cancelled);
+
 	/**
 	 * List the entries in a folder.
 	 *
@@ -160,7 +320,49 @@ public interface RepositoryFacade extends AutoCloseable {
 	 */
 	ObjectLoader showFile(String commitId, String path) throws IOException, GitException;
 
+	/**
+	 * Find the blob for a file in a git repository.
+	 *
+	 * @param commitId Commit id.
+	 * @param path Exact file path.
+	 * @return {@link ObjectId} for the blob.
+	 * @throws IOException If an I/O error occurs.
+	 * @throws GitException If an GitException occurs.
+	 */
+	ObjectId resolveFile(String commitId, String path) throws IOException, GitException;
+
+	/**
+	 * Load a blob from a git repository.
+	 *
+	 * @param blobId Object id for the blob.
+	 * @return {@link ObjectLoader} for the object.
+	 * @throws IOException If an I/O error occurs.
+	 * @throws GitException If an GitException occurs.
+	 * @see #resolveFile(String, String)
+	 */
+	ObjectLoader showFile(ObjectId blobId) throws IOException, GitException;
+
 	@Override
 	void close() throws IOException;
 
+	/**
+	 * Consumer for the changed files in a diff.
+	 */
+	@FunctionalInterface
+	interface DiffFileConsumer {
+
+		void accept(DiffFile<DiffContext<DiffLine>> diffFile) throws IOException;
+
+	}
+
+	/**
+	 * Consumer for the blocks in a blame.
+	 */
+	@FunctionalInterface
+	interface BlameBlockConsumer {
+
+		void accept(BlameBlock blameBlock) throws IOException;
+
+	}
+
 }
@@ -18,4 +18,10 @@ public interface RepositoryFacadeFactory {
 	 */
 	RepositoryFacade create(Repository repository) throws IOException;
 
+	/**
+	 * Release any cached resources for a repository, for example after it has been removed.
+	 * @param repository Repository for which to release the resources.
+	 */
+	void invalidate(Repository repository);
+
 }
@@ -0,0 +1,72 @@
+package nl.tudelft.ewi.git.inspector;
+
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.LineType;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounds the total amount of lines in a diff by {@link DiffLimits#getMaxTotalLines()}. The files
+ * of the diff are passed to the budget in order, and files that no longer fit in the remaining
+ * budget are truncated. Because the files are passed in order, the same files are truncated
+ * regardless of the order in which they were formatted.
+ *
+ * A {@code DiffBudget} is not thread safe.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class DiffBudget {
+
+	private long remaining;
+
+	public DiffBudget(final DiffLimits limits) {
+		this.remaining = limits.getMaxTotalLines();
+	}
+
+	/**
+	 * Charge the lines of a file to the budget, or truncate the file if it does not fit.
+	 *
+	 * @param diffFile A formatted {@link DiffFile}.
+	 * @return the file, with its contexts removed if it did not fit in the budget.
+	 */
+	public <C extends DiffContext<?>> DiffFile<C> apply(final DiffFile<C> diffFile) {
+		if (diffFile.isTruncated() || diffFile.getContexts() == null) {
+			return diffFile;
+		}
+
+		int lines = 0;
+		for (C context : diffFile.getContexts()) {
+			// Count by type, so compact contexts do not have to decode their lines
+			for (LineType type : LineType.values()) {
+				lines += context.amountOfLinesWithType(type);
+			}
+		}
+
+		if (lines <= remaining) {
+			remaining -= lines;
+			return diffFile;
+		}
+
+		int additions = diffFile.getLinesAdded();
+		int deletions = diffFile.getLinesRemoved();
+		diffFile.setContexts(Collections.emptyList());
+		diffFile.setTruncated(true);
+		diffFile.setAdditions(additions);
+		diffFile.setDeletions(deletions);
+		return diffFile;
+	}
+
+	/**
+	 * Apply the budget to all files of a diff.
+	 *
+	 * @param diffFiles The formatted files, in order.
+	 * @return the files.
+	 */
+	public <C extends DiffContext<?>> List<DiffFile<C>> applyAll(final List<DiffFile<C>> diffFiles) {
+		diffFiles.forEach(this::apply);
+		return diffFiles;
+	}
+
+}
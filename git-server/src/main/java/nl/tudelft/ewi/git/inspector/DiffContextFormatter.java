@@ -10,6 +10,7 @@ import java.util.List;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.CompactDiffModel.CompactDiffContext;
 import org.eclipse.jgit.diff.ContentSource;
 import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.DiffEntry;
@@ -17,12 +18,9 @@ import org.eclipse.jgit.diff.Edit;
 import org.eclipse.jgit.diff.EditList;
 import org.eclipse.jgit.diff.RawText;
 import org.eclipse.jgit.diff.RawTextComparator;
-import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectLoader;
-import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.pack.PackConfig;
 
 import com.google.common.base.Preconditions;
@@ -32,22 +30,29 @@ public class DiffContextFormatter {
 
 	private static final byte[] EMPTY = new byte[] {};
 	private static final byte[] BINARY = new byte[] {};
-	
-	private DiffAlgorithm diffAlgorithm = DiffAlgorithm.getAlgorithm(SupportedAlgorithm.MYERS);
-	private RawTextComparator comparator = RawTextComparator.DEFAULT;
+	private static final byte[] TOO_LARGE = new byte[] {};
+
+	private final DiffAlgorithm diffAlgorithm;
+	private final RawTextComparator comparator;
 	private int binaryFileThreshold = PackConfig.DEFAULT_BIG_FILE_THRESHOLD;
+	private final DiffFile diffFile;
 	private final List<DiffContext> list;
-	private final ObjectReader reader;
 	private final ContentSource.Pair source;
-	private int context = 3;
+	private final DiffLimits limits;
+	private int context;
+	private RawText a;
+	private RawText b;
 	
-	public DiffContextFormatter(final DiffFile diffFile, final Repository repository) {
+	public DiffContextFormatter(final DiffFile diffFile, final DiffSession session) {
 		Preconditions.checkNotNull(diffFile);
-		Preconditions.checkNotNull(repository);
+		Preconditions.checkNotNull(session);
 		
-		reader = repository.newObjectReader();
-		ContentSource cs = ContentSource.create(reader);
-		source = new ContentSource.Pair(cs, cs);
+		this.diffFile = diffFile;
+		source = session.getSource();
+		limits = session.getLimits();
+		diffAlgorithm = session.getDiffAlgorithm();
+		comparator = session.getComparator();
+		context = session.getContext();
 		
 		if(diffFile.getContexts() != null) {
 			list = diffFile.getContexts();
@@ -59,25 +64,11 @@ public class DiffContextFormatter {
 	}
 	
 	public void format(final DiffEntry ent) throws IOException {
-		if (ent.getOldMode() == GITLINK || ent.getNewMode() == GITLINK
-				|| ent.getOldId() == null || ent.getNewId() == null) {
-			// No diff lines for git links, renames, file adds
+		List<Edit> edits = computeEditsWithinLimits(ent);
+		if (edits == null) {
 			return;
 		}
 		
-		byte[] aRaw = open(OLD, ent);
-		byte[] bRaw = open(NEW, ent);
-		
-		if (aRaw == BINARY || bRaw == BINARY //
-				|| RawText.isBinary(aRaw) || RawText.isBinary(bRaw)) {
-			// No diff lines for binary files
-			return;
-		}
-		
-		RawText a = new RawText(aRaw);
-		RawText b = new RawText(bRaw);
-		List<Edit> edits = diff(a, b);
-		
 		for (int curIdx = 0; curIdx < edits.size();) {
 			Edit curEdit = edits.get(curIdx);
 			final int endIdx = findCombinedEnd(edits, curIdx);
@@ -122,6 +113,157 @@ public class DiffContextFormatter {
 		}
 	}
 	
+	/**
+	 * Format an entry into {@link CompactDiffContext CompactDiffContexts}. The contexts are encoded
+	 * directly from the edits, without creating a {@link DiffLine} for every line. The contexts
+	 * decode to the same lines as the contexts created by {@link #format(DiffEntry)}.
+	 *
+	 * @param ent {@link DiffEntry} to format.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void encode(final DiffEntry ent) throws IOException {
+		List<Edit> edits = computeEditsWithinLimits(ent);
+		if (edits == null) {
+			return;
+		}
+
+		for (int curIdx = 0; curIdx < edits.size();) {
+			final int endIdx = findCombinedEnd(edits, curIdx);
+			final Edit curEdit = edits.get(curIdx);
+			final Edit endEdit = edits.get(endIdx);
+
+			final int aStart = Math.max(0, curEdit.getBeginA() - context);
+			final int bStart = Math.max(0, curEdit.getBeginB() - context);
+			final int aEnd = Math.min(a.size(), endEdit.getEndA() + context);
+			final int bEnd = Math.min(b.size(), endEdit.getEndB() + context);
+
+			// Every edit adds a run of context, removed and added lines, followed by the trailing context
+			final int[] runs = new int[3 * (endIdx - curIdx + 1) + 1];
+			final StringBuilder text = new StringBuilder();
+			int aCur = aStart;
+
+			for (int i = curIdx; i <= endIdx; i++) {
+				Edit edit = edits.get(i);
+				runs[3 * (i - curIdx)] = appendLines(text, a, aCur, edit.getBeginA());
+				runs[3 * (i - curIdx) + 1] = appendLines(text, a, edit.getBeginA(), edit.getEndA());
+				runs[3 * (i - curIdx) + 2] = appendLines(text, b, edit.getBeginB(), edit.getEndB());
+				aCur = edit.getEndA();
+			}
+			runs[runs.length - 1] = appendLines(text, a, aCur, aEnd);
+
+			if (text.length() > 0) {
+				// Drop the separator after the last line
+				text.setLength(text.length() - 1);
+			}
+
+			final CompactDiffContext diffContext = new CompactDiffContext();
+			diffContext.setOldStart(aEnd > aStart ? aStart + 1 : 0);
+			diffContext.setNewStart(bEnd > bStart ? bStart + 1 : 0);
+			diffContext.setText(text.toString());
+			diffContext.setRuns(runs);
+			list.add(diffContext);
+
+			curIdx = endIdx + 1;
+		}
+	}
+
+	/**
+	 * Count the added and removed lines of an entry into the additions and deletions of the
+	 * {@link DiffFile}, without creating any lines. The counts are left {@code null} for git
+	 * links, binary files and files that are too large to compare.
+	 *
+	 * @param ent {@link DiffEntry} to count.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void count(final DiffEntry ent) throws IOException {
+		List<Edit> edits = computeEdits(ent);
+		if (edits != null) {
+			diffFile.setAdditions(countAdditions(edits));
+			diffFile.setDeletions(countDeletions(edits));
+		}
+	}
+
+	/*
+	 * Load both sides of the entry and compute the edits between them. Returns null if there are no
+	 * lines to compare.
+	 */
+	private EditList computeEdits(final DiffEntry ent) throws IOException {
+		if (ent.getOldMode() == GITLINK || ent.getNewMode() == GITLINK
+				|| ent.getOldId() == null || ent.getNewId() == null) {
+			// No diff lines for git links, renames, file adds
+			return null;
+		}
+		
+		byte[] aRaw = open(OLD, ent);
+		byte[] bRaw = open(NEW, ent);
+		
+		if (aRaw == BINARY || bRaw == BINARY //
+				|| RawText.isBinary(aRaw) || RawText.isBinary(bRaw)) {
+			// No diff lines for binary files
+			return null;
+		}
+
+		if (aRaw == TOO_LARGE || bRaw == TOO_LARGE) {
+			// Too large to compare, so the amount of changed lines is unknown
+			diffFile.setTruncated(true);
+			return null;
+		}
+		
+		a = new RawText(aRaw);
+		b = new RawText(bRaw);
+		return diff(a, b);
+	}
+
+	/*
+	 * Compute the edits of an entry, or summarize the file and return null if it has more changed
+	 * lines than a file may show.
+	 */
+	private List<Edit> computeEditsWithinLimits(final DiffEntry ent) throws IOException {
+		List<Edit> edits = computeEdits(ent);
+		if (edits == null) {
+			return null;
+		}
+
+		int additions = countAdditions(edits);
+		int deletions = countDeletions(edits);
+
+		if (additions + deletions > limits.getMaxFileLines()) {
+			// Only summarize the file, instead of creating lines for every change
+			diffFile.setTruncated(true);
+			diffFile.setAdditions(additions);
+			diffFile.setDeletions(deletions);
+			return null;
+		}
+
+		return edits;
+	}
+
+	/*
+	 * Append the lines [from, to) of a text, each followed by a newline. Returns the amount of lines.
+	 */
+	private static int appendLines(final StringBuilder text, final RawText rawText, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			text.append(rawText.getString(i)).append('\n');
+		}
+		return to - from;
+	}
+
+	private static int countAdditions(final List<Edit> edits) {
+		int additions = 0;
+		for (Edit edit : edits) {
+			additions += edit.getLengthB();
+		}
+		return additions;
+	}
+
+	private static int countDeletions(final List<Edit> edits) {
+		int deletions = 0;
+		for (Edit edit : edits) {
+			deletions += edit.getLengthA();
+		}
+		return deletions;
+	}
+	
 	public void setContext(int context) {
 		this.context = context;
 	}
@@ -160,7 +302,14 @@ public class DiffContextFormatter {
 			return EMPTY;
 
 		ObjectLoader ldr = source.open(side, entry);
-		return ldr.getBytes(binaryFileThreshold);
+		if (ldr.getSize() > binaryFileThreshold)
+			return BINARY;
+
+		if (ldr.getSize() > limits.getMaxFileBytes())
+			return TOO_LARGE;
+
+		// The contents are only read, so the loader does not have to copy them
+		return ldr.getCachedBytes(binaryFileThreshold);
 	}
 
 }
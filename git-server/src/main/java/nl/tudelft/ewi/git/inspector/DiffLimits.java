@@ -0,0 +1,35 @@
+package nl.tudelft.ewi.git.inspector;
+
+import lombok.Value;
+
+/**
+ * Size limits for a diff. Files that exceed the limits are returned as a summary, without their
+ * contexts, and are marked as {@link nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile#isTruncated()
+ * truncated}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Value
+public class DiffLimits {
+
+	/**
+	 * Limits that never truncate a file.
+	 */
+	public static final DiffLimits UNLIMITED = new DiffLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+	/**
+	 * Maximum amount of added and removed lines in a single file.
+	 */
+	int maxFileLines;
+
+	/**
+	 * Maximum size in bytes of either side of a single file. Larger files are not compared at all.
+	 */
+	int maxFileBytes;
+
+	/**
+	 * Maximum amount of lines, including context lines, in all files of the diff together.
+	 */
+	int maxTotalLines;
+
+}
@@ -0,0 +1,124 @@
+package nl.tudelft.ewi.git.inspector;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import org.eclipse.jgit.diff.ContentSource;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * A {@code DiffSession} holds the resources that are shared by the {@link DiffContextFormatter
+ * DiffContextFormatters} for all files in a diff. It owns a single {@link ObjectReader}, so that
+ * its inflater, windows and caches are reused for every blob in the diff. The session also holds
+ * the amount of context lines, the {@link DiffOptions} and the {@link DiffLimits} with which the
+ * files are formatted.
+ *
+ * The session should be closed after the diff has been formatted.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class DiffSession implements AutoCloseable {
+
+	/**
+	 * Default amount of context lines around added/removed blocks.
+	 */
+	public static final int DEFAULT_CONTEXT = 3;
+
+	@Getter
+	private final ObjectReader reader;
+
+	@Getter
+	private final ContentSource.Pair source;
+
+	@Getter
+	private final int context;
+
+	@Getter
+	private final DiffOptions options;
+
+	@Getter
+	private final DiffLimits limits;
+
+	@Getter
+	private final DiffAlgorithm diffAlgorithm;
+
+	@Getter
+	private final RawTextComparator comparator;
+
+	public DiffSession(final Repository repository) {
+		this(repository, DEFAULT_CONTEXT, new DiffOptions());
+	}
+
+	public DiffSession(final Repository repository, final int context, final DiffOptions options) {
+		this(repository, context, options, DiffLimits.UNLIMITED);
+	}
+
+	public DiffSession(final Repository repository, final int context, final DiffOptions options,
+	                   final DiffLimits limits) {
+		this(Preconditions.checkNotNull(repository).newObjectReader(), context, options, limits);
+	}
+
+	private DiffSession(final ObjectReader reader, final int context, final DiffOptions options,
+	                    final DiffLimits limits) {
+		Preconditions.checkArgument(context >= 0, "Context should be non-negative");
+		Preconditions.checkNotNull(options);
+		Preconditions.checkNotNull(limits);
+
+		this.reader = reader;
+		ContentSource cs = ContentSource.create(reader);
+		this.source = new ContentSource.Pair(cs, cs);
+		this.context = context;
+		this.options = options;
+		this.limits = limits;
+		this.diffAlgorithm = DiffAlgorithm.getAlgorithm(getSupportedAlgorithm(options.getAlgorithm()));
+		this.comparator = getComparator(options.getWhitespace());
+	}
+
+	/**
+	 * {@link ObjectReader ObjectReaders} are not thread safe. Create a session with a new reader for
+	 * the same repository, to format files on another thread.
+	 *
+	 * @return a new {@code DiffSession}, that should be closed as well.
+	 */
+	public DiffSession fork() {
+		return new DiffSession(reader.newReader(), context, options, limits);
+	}
+
+	@Override
+	public void close() {
+		reader.close();
+	}
+
+	private static SupportedAlgorithm getSupportedAlgorithm(DiffOptions.Algorithm algorithm) {
+		switch (Preconditions.checkNotNull(algorithm)) {
+			case MYERS:
+				return SupportedAlgorithm.MYERS;
+			case HISTOGRAM:
+				return SupportedAlgorithm.HISTOGRAM;
+			default:
+				throw new IllegalArgumentException("Unsupported diff algorithm " + algorithm);
+		}
+	}
+
+	private static RawTextComparator getComparator(DiffOptions.Whitespace whitespace) {
+		switch (Preconditions.checkNotNull(whitespace)) {
+			case NONE:
+				return RawTextComparator.DEFAULT;
+			case IGNORE_ALL:
+				return RawTextComparator.WS_IGNORE_ALL;
+			case IGNORE_LEADING:
+				return RawTextComparator.WS_IGNORE_LEADING;
+			case IGNORE_TRAILING:
+				return RawTextComparator.WS_IGNORE_TRAILING;
+			case IGNORE_CHANGE:
+				return RawTextComparator.WS_IGNORE_CHANGE;
+			default:
+				throw new IllegalArgumentException("Unsupported whitespace option " + whitespace);
+		}
+	}
+
+}
@@ -1,17 +1,34 @@
 package nl.tudelft.ewi.git.web.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
 import nl.tudelft.ewi.git.backend.RepositoryFacade;
 import nl.tudelft.ewi.git.backend.JGitRepositoryFacade;
 import nl.tudelft.ewi.git.backend.RepositoryFacadeFactory;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
+import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel;
 import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffStatModel;
 import nl.tudelft.ewi.gitolite.ManagedConfig;
 import nl.tudelft.ewi.gitolite.git.GitException;
 import nl.tudelft.ewi.gitolite.repositories.Repository;
 
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.DefaultValue;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.BooleanSupplier;
 
 /**
  * Both the {@link CommitApi} and {@link BranchApi} have diff endpoints. This is a basic implementation
@@ -25,25 +42,48 @@ public abstract class AbstractDiffableApi extends AbstractRepositoryApi implemen
 		super(managedConfig, transformers, repository, repositoryFacadeFactory);
 	}
 
+	@Context private Providers providers;
+
 	protected abstract String getOwnCommitId();
 
 	protected abstract String getCompareCommitId();
 
 	@Override
-	public final DiffModel diff(@DefaultValue("3") int context) {
-		return diff(getCompareCommitId(), context);
+	public DiffModel diff(@DefaultValue("3") int context, DiffOptions options) {
+		return diff(getCompareCommitId(), context, options);
+	}
+
+	@Override
+	public CompactDiffModel diffCompact(@DefaultValue("3") int context, DiffOptions options) {
+		return diffCompact(getCompareCommitId(), context, options);
+	}
+
+	@Override
+	public final Response diffStream(@DefaultValue("3") int context, DiffOptions options) {
+		return diffStream(getCompareCommitId(), context, options);
+	}
+
+	@Override
+	public final DiffStatModel diffStat(DiffOptions options) {
+		return diffStat(getCompareCommitId(), options);
 	}
 
 	@Override
-	public final DiffBlameModel diffBlame(@DefaultValue("3") int context) {
-		return diffBlame(getCompareCommitId(), context);
+	public final DiffFile<DiffContext<DiffLine>> diffFile(@NotNull String path, @DefaultValue("3") int context,
+	                                                      DiffOptions options) {
+		return diffFile(getCompareCommitId(), path, context, options);
 	}
 
 	@Override
-	public DiffModel diff(@NotNull String leftCommitId, @DefaultValue("3") int context) {
+	public DiffBlameModel diffBlame(@DefaultValue("3") int context, DiffOptions options) {
+		return diffBlame(getCompareCommitId(), context, options);
+	}
+
+	@Override
+	public DiffModel diff(@NotNull String leftCommitId, @DefaultValue("3") int context, DiffOptions options) {
 		String rightCommitId = getOwnCommitId();
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
-			return repositoryFacade.calculateDiff(leftCommitId, rightCommitId, context);
+			return repositoryFacade.calculateDiff(leftCommitId, rightCommitId, context, options);
 		}
 		catch (IOException e) {
 			throw new GitException(e);
@@ -51,11 +91,145 @@ public abstract class AbstractDiffableApi extends AbstractRepositoryApi implemen
 	}
 
 	@Override
-	public DiffBlameModel diffBlame(@NotNull String oldCommitId, @DefaultValue("3") int context) {
+	public CompactDiffModel diffCompact(@NotNull String leftCommitId, @DefaultValue("3") int context, DiffOptions options) {
+		String rightCommitId = getOwnCommitId();
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.calculateCompactDiff(leftCommitId, rightCommitId, context, options);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	@Override
+	public Response diffStream(@NotNull String leftCommitId, @DefaultValue("3") int context, DiffOptions options) {
+		String rightCommitId = getOwnCommitId();
+
+		// Resolve the commits up front, so that missing commits result in a 404 instead of a broken stream
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			if (!Strings.isNullOrEmpty(leftCommitId)) {
+				repositoryFacade.retrieveCommit(leftCommitId);
+			}
+			repositoryFacade.retrieveCommit(rightCommitId);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+
+		ObjectMapper objectMapper = getObjectMapper();
+		StreamingOutput output = outputStream -> {
+			try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository);
+			    JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("diffs");
+
+				DiffModel diffModel = repositoryFacade.calculateDiff(leftCommitId, rightCommitId, context, options, diffFile -> {
+					generator.writeObject(diffFile);
+					generator.flush();
+				});
+
+				generator.writeEndArray();
+				generator.writeObjectField("newCommit", diffModel.getNewCommit());
+				generator.writeObjectField("oldCommit", diffModel.getOldCommit());
+				generator.writeObjectField("commits", diffModel.getCommits());
+				generator.writeObjectField("commitsCursor", diffModel.getCommitsCursor());
+				generator.writeEndObject();
+			}
+		};
+
+		return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	@Override
+	public DiffStatModel diffStat(@NotNull String leftCommitId, DiffOptions options) {
+		String rightCommitId = getOwnCommitId();
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.calculateDiffStat(leftCommitId, rightCommitId, options);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	@Override
+	public DiffFile<DiffContext<DiffLine>> diffFile(@NotNull String leftCommitId, @NotNull String path,
+	                                                @DefaultValue("3") int context, DiffOptions options) {
+		String rightCommitId = getOwnCommitId();
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.calculateDiffFile(leftCommitId, rightCommitId, path, context, options);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	/**
+	 * The servlet container does not report a client that disconnects during a synchronous request.
+	 * A request is cancelled when its thread is interrupted, for example when the server stops. The
+	 * blame of the files that are not started yet is then skipped.
+	 *
+	 * @return whether the request on the current thread is cancelled.
+	 * @see #requestCancellation(OutputStream)
+	 */
+	protected static BooleanSupplier requestCancellation() {
+		Thread requestThread = Thread.currentThread();
+		return requestThread::isInterrupted;
+	}
+
+	/**
+	 * A streamed request is also cancelled when its client has disconnected, which is detected by
+	 * the {@link DisconnectProbe}. The response of a stream is already committed, so probing the
+	 * connection does not change the response.
+	 *
+	 * @param outputStream The output stream of the streamed response.
+	 * @return whether the request on the current thread is cancelled.
+	 */
+	protected static BooleanSupplier requestCancellation(OutputStream outputStream) {
+		BooleanSupplier interrupted = requestCancellation();
+		DisconnectProbe disconnectProbe = new DisconnectProbe(outputStream);
+		return () -> interrupted.getAsBoolean() || disconnectProbe.getAsBoolean();
+	}
+
+	protected ObjectMapper getObjectMapper() {
+		ContextResolver<ObjectMapper> resolver = providers == null ? null :
+			providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+		ObjectMapper objectMapper = resolver == null ? null : resolver.getContext(DiffModel.class);
+		return objectMapper != null ? objectMapper : new ObjectMapper();
+	}
+
+	@Override
+	public Response diffBlameStream(@DefaultValue("3") int context, DiffOptions options) {
+		return diffBlameStream(diff(context, options));
+	}
+
+	@Override
+	public Response diffBlameStream(@NotNull String oldCommitId, @DefaultValue("3") int context, DiffOptions options) {
+		return diffBlameStream(diff(oldCommitId, context, options));
+	}
+
+	/*
+	 * The diff is calculated up front, so that missing commits result in a 404 instead of a broken stream.
+	 */
+	private Response diffBlameStream(DiffModel diffModel) {
+		ObjectMapper objectMapper = getObjectMapper();
+		StreamingOutput output = outputStream -> {
+			try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository);
+			    JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+				generator.writeObject(repositoryFacade.addBlameData(diffModel, requestCancellation(outputStream)));
+			}
+		};
+
+		return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+	}
+
+	@Override
+	public DiffBlameModel diffBlame(@NotNull String oldCommitId, @DefaultValue("3") int context, DiffOptions options) {
 		String rightCommitId = getOwnCommitId();
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
-			DiffModel diffModel = repositoryFacade.calculateDiff(oldCommitId, rightCommitId, context);
-			return repositoryFacade.addBlameData(diffModel);
+			DiffModel diffModel = repositoryFacade.calculateDiff(oldCommitId, rightCommitId, context, options);
+			return repositoryFacade.addBlameData(diffModel, requestCancellation());
 		}
 		catch (IOException e) {
 			throw new GitException(e);
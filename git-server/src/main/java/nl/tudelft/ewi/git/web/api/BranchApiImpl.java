@@ -12,6 +12,10 @@ import nl.tudelft.ewi.git.backend.RepositoryFacadeFactory;
 import nl.tudelft.ewi.git.models.BranchModel;
 import nl.tudelft.ewi.git.models.CommitModel;
 import nl.tudelft.ewi.git.models.CommitSubList;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
+import nl.tudelft.ewi.git.models.DiffBlameModel;
+import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
 import nl.tudelft.ewi.git.models.MergeResponse;
 import nl.tudelft.ewi.git.web.api.di.CommitApiFactory;
 import nl.tudelft.ewi.gitolite.ManagedConfig;
@@ -250,9 +254,45 @@ public class BranchApiImpl extends AbstractDiffableApi implements BranchApi {
 		}
 	}
 
+	@Override
+	public DiffModel diff(@DefaultValue("3") int context, DiffOptions options) {
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.calculateBranchDiff(branchName, context, options);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	@Override
+	public CompactDiffModel diffCompact(@DefaultValue("3") int context, DiffOptions options) {
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.calculateCompactBranchDiff(branchName, context, options);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	@Override
+	public DiffBlameModel diffBlame(@DefaultValue("3") int context, DiffOptions options) {
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			DiffModel diffModel = repositoryFacade.calculateBranchDiff(branchName, context, options);
+			return repositoryFacade.addBlameData(diffModel, requestCancellation());
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
 	@Override
 	protected String getOwnCommitId() {
-		return get().getCommit().getCommit();
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			return repositoryFacade.resolveBranch(branchName).getName();
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
 	}
 
 	@Override
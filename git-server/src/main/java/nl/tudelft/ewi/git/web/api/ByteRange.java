@@ -0,0 +1,87 @@
+package nl.tudelft.ewi.git.web.api;
+
+import com.google.common.base.Strings;
+import lombok.Value;
+
+/**
+ * A single byte range from a HTTP {@code Range} header, for example {@code bytes=0-499},
+ * {@code bytes=500-} or {@code bytes=-500}.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Value
+class ByteRange {
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	/**
+	 * Offset of the first byte in the range.
+	 */
+	long first;
+
+	/**
+	 * Offset of the last byte in the range, inclusive.
+	 */
+	long last;
+
+	public long getLength() {
+		return last - first + 1;
+	}
+
+	/**
+	 * @param size Size of the entity.
+	 * @return the value for the {@code Content-Range} header.
+	 */
+	public String toContentRange(long size) {
+		return "bytes " + first + "-" + last + "/" + size;
+	}
+
+	/**
+	 * Parse a {@code Range} header. Only single ranges are supported, other headers are ignored and
+	 * should result in the full entity to be sent.
+	 *
+	 * @param header Value of the {@code Range} header, may be null.
+	 * @param size Size of the entity.
+	 * @return the {@code ByteRange}, or null if the header is absent or not supported.
+	 * @throws IllegalStateException If the range cannot be satisfied.
+	 */
+	static ByteRange parse(String header, long size) {
+		if (Strings.isNullOrEmpty(header) || !header.startsWith(BYTES_UNIT) || header.contains(",")) {
+			return null;
+		}
+
+		String spec = header.substring(BYTES_UNIT.length()).trim();
+		int separator = spec.indexOf('-');
+		if (separator < 0) {
+			return null;
+		}
+
+		try {
+			String first = spec.substring(0, separator).trim();
+			String last = spec.substring(separator + 1).trim();
+
+			if (first.isEmpty()) {
+				// Suffix range, the last n bytes
+				long length = Long.parseLong(last);
+				if (length <= 0 || size == 0) {
+					throw new IllegalStateException("Unsatisfiable range " + header);
+				}
+				return new ByteRange(Math.max(0, size - length), size - 1);
+			}
+
+			long from = Long.parseLong(first);
+			long to = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+			if (from >= size) {
+				throw new IllegalStateException("Unsatisfiable range " + header);
+			}
+			if (from > to) {
+				return null;
+			}
+			return new ByteRange(from, to);
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
@@ -1,5 +1,8 @@
 package nl.tudelft.ewi.git.web.api;
 
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import lombok.Getter;
@@ -8,27 +11,47 @@ import nl.tudelft.ewi.git.backend.RepositoryFacade;
 import nl.tudelft.ewi.git.backend.JGitRepositoryFacade;
 import nl.tudelft.ewi.git.backend.RepositoryFacadeFactory;
 import nl.tudelft.ewi.git.models.BlameModel;
+import nl.tudelft.ewi.git.models.BlameModel.BlameBlock;
 import nl.tudelft.ewi.git.models.DetailedCommitModel;
 import nl.tudelft.ewi.git.models.EntryType;
 import nl.tudelft.ewi.gitolite.ManagedConfig;
 import nl.tudelft.ewi.gitolite.git.GitException;
 import nl.tudelft.ewi.gitolite.repositories.Repository;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.jboss.resteasy.annotations.cache.Cache;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 import java.util.Map;
 
+import static javax.ws.rs.core.Response.Status.PARTIAL_CONTENT;
+import static javax.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE;
+
 /**
  * @author Jan-Willem Gmelig Meyling
  */
 @Cache(maxAge = 86400)
 public class CommitApiImpl extends AbstractDiffableApi implements CommitApi {
 
+	private static final String ACCEPT_RANGES = "Accept-Ranges";
+	private static final String CONTENT_RANGE = "Content-Range";
+	private static final String IF_RANGE = "If-Range";
+	private static final String RANGE = "Range";
+
 	@Getter private final String ownCommitId;
+	@Context @Setter @Getter private HttpServletRequest request;
 	@Context @Setter @Getter private HttpServletResponse response;
 
 	@Inject
@@ -63,6 +86,31 @@ public class CommitApiImpl extends AbstractDiffableApi implements CommitApi {
 		}
 	}
 
+	@Override
+	public Response blameStream(String filePath) {
+		// Resolve the file up front, so that a missing file results in a 404 instead of a broken stream
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			repositoryFacade.resolveFile(ownCommitId, filePath);
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+
+		// A client that disconnects fails the next write, which stops the blame
+		ObjectWriter objectWriter = getObjectMapper().writerFor(BlameBlock.class);
+		StreamingOutput output = outputStream -> {
+			try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+				repositoryFacade.blame(ownCommitId, filePath, blameBlock -> {
+					outputStream.write(objectWriter.writeValueAsBytes(blameBlock));
+					outputStream.write('\n');
+					outputStream.flush();
+				});
+			}
+		};
+
+		return Response.ok(output, JSON_LINES).build();
+	}
+
 	@Override
 	public Map<String, EntryType> showTree(final String path) {
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
@@ -79,8 +127,8 @@ public class CommitApiImpl extends AbstractDiffableApi implements CommitApi {
 			String fileName = path.substring(path.lastIndexOf('/') + 1);
 			ObjectLoader objectLoader = repositoryFacade.showFile(ownCommitId, path);
 			if (response != null) {
-				response.setHeader("Content-Length", Long.toString(objectLoader.getSize()));
-				response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+				response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(objectLoader.getSize()));
+				response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
 			}
 			return objectLoader.openStream();
 		}
@@ -89,4 +137,102 @@ public class CommitApiImpl extends AbstractDiffableApi implements CommitApi {
 		}
 	}
 
+	@Override
+	public Response downloadFile(final String path) {
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
+			String fileName = path.substring(path.lastIndexOf('/') + 1);
+			ObjectId blobId = repositoryFacade.resolveFile(ownCommitId, path);
+
+			// Blobs are immutable, so the blob id is a strong entity tag
+			EntityTag entityTag = new EntityTag(blobId.name());
+
+			if (request != null && matchesEntityTag(request.getHeader(HttpHeaders.IF_NONE_MATCH), entityTag)) {
+				return Response.notModified(entityTag).build();
+			}
+
+			ObjectLoader objectLoader = repositoryFacade.showFile(blobId);
+			long size = objectLoader.getSize();
+			ByteRange range;
+
+			try {
+				range = getRequestedRange(entityTag, size);
+			}
+			catch (IllegalStateException e) {
+				return Response.status(REQUESTED_RANGE_NOT_SATISFIABLE)
+					.header(CONTENT_RANGE, "bytes */" + size)
+					.build();
+			}
+
+			InputStream inputStream = objectLoader.openStream();
+			ResponseBuilder responseBuilder;
+
+			if (range == null) {
+				responseBuilder = Response.ok(inputStream)
+					.header(HttpHeaders.CONTENT_LENGTH, size);
+			}
+			else {
+				ByteStreams.skipFully(inputStream, range.getFirst());
+				responseBuilder = Response.status(PARTIAL_CONTENT)
+					.entity(ByteStreams.limit(inputStream, range.getLength()))
+					.header(HttpHeaders.CONTENT_LENGTH, range.getLength())
+					.header(CONTENT_RANGE, range.toContentRange(size));
+			}
+
+			return responseBuilder
+				.type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+				.tag(entityTag)
+				.header(ACCEPT_RANGES, "bytes")
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+				.build();
+		}
+		catch (IOException e) {
+			throw new GitException(e);
+		}
+	}
+
+	@Override
+	public String showTextFile(String path, Charset charset) throws IOException {
+		// Read the whole file, regardless of the conditional and range headers of the request
+		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository);
+		    InputStream inputStream = repositoryFacade.showFile(ownCommitId, path).openStream()) {
+			return CharStreams.toString(new InputStreamReader(inputStream, charset));
+		}
+	}
+
+	/*
+	 * Returns null if the whole file is requested, and throws an IllegalStateException if the
+	 * requested range cannot be satisfied.
+	 */
+	private ByteRange getRequestedRange(EntityTag entityTag, long size) {
+		if (request == null) {
+			return null;
+		}
+
+		String ifRange = request.getHeader(IF_RANGE);
+		if (ifRange != null && !ifRange.equals(entityTag.toString())) {
+			// The representation changed, send it as a whole
+			return null;
+		}
+
+		return ByteRange.parse(request.getHeader(RANGE), size);
+	}
+
+	private static boolean matchesEntityTag(String ifNoneMatch, EntityTag entityTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			// If-None-Match uses the weak comparison
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(entityTag.toString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,48 @@
+package nl.tudelft.ewi.git.web.api;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Detects whether the client of a streamed JSON response has disconnected. The servlet container
+ * only notices a closed connection when it writes to it, so every probe writes and flushes a single
+ * space, which is insignificant whitespace in the JSON body. Once a write fails, the client is gone.
+ *
+ * The probe should only be used on the output stream of a {@link javax.ws.rs.core.StreamingOutput},
+ * of which the response is committed before it writes. A probe may be used from multiple threads.
+ *
+ * @author Jan-Willem Gmelig Meyling
+ */
+@Slf4j
+class DisconnectProbe implements BooleanSupplier {
+
+	private final OutputStream outputStream;
+
+	private boolean disconnected;
+
+	DisconnectProbe(OutputStream outputStream) {
+		this.outputStream = outputStream;
+	}
+
+	/**
+	 * @return true if the client has disconnected.
+	 */
+	@Override
+	public synchronized boolean getAsBoolean() {
+		if (!disconnected) {
+			try {
+				outputStream.write(' ');
+				outputStream.flush();
+			}
+			catch (IOException e) {
+				log.debug("Client disconnected: {}", e.getMessage());
+				disconnected = true;
+			}
+		}
+		return disconnected;
+	}
+
+}
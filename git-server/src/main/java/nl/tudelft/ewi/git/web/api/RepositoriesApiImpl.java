@@ -11,6 +11,7 @@ import lombok.extern.slf4j.Slf4j;
 import nl.tudelft.ewi.git.Config;
 import nl.tudelft.ewi.git.models.CreateRepositoryModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
+import nl.tudelft.ewi.git.models.RepositoryFields;
 import nl.tudelft.ewi.git.models.RepositoryModel;
 import nl.tudelft.ewi.git.models.RepositoryModel.Level;
 import nl.tudelft.ewi.git.web.api.di.RepositoryApiFactory;
@@ -63,8 +64,10 @@ public class RepositoriesApiImpl implements RepositoriesApi {
 	}
 
 	@Override
-	public Collection<RepositoryModel> listAllRepositories() {
-		return Collections2.transform(repositoriesManager.getRepositories(), transformers::transformRepository);
+	public Collection<RepositoryModel> listAllRepositories(RepositoryFields fields) {
+		RepositoryFields requested = fields == null ? RepositoryFields.ALL : fields;
+		return Collections2.transform(repositoriesManager.getRepositories(),
+			repository -> transformers.transformRepository(repository, requested));
 	}
 
 	@Override
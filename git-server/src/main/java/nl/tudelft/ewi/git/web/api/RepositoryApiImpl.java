@@ -9,6 +9,8 @@ import nl.tudelft.ewi.git.backend.RepositoryFacadeFactory;
 import nl.tudelft.ewi.git.models.BranchModel;
 import nl.tudelft.ewi.git.models.CommitModel;
 import nl.tudelft.ewi.git.models.DetailedRepositoryModel;
+import nl.tudelft.ewi.git.models.RefListOptions;
+import nl.tudelft.ewi.git.models.RepositoryFields;
 import nl.tudelft.ewi.git.models.RepositoryModel;
 import nl.tudelft.ewi.git.models.TagModel;
 import nl.tudelft.ewi.git.web.api.di.BranchApiFactory;
@@ -57,9 +59,9 @@ public class RepositoryApiImpl extends AbstractRepositoryApi implements Reposito
 	}
 
 	@Override
-	public Collection<BranchModel> getBranches() {
+	public Collection<BranchModel> getBranches(RefListOptions options) {
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
-			return repositoryFacade.getBranches();
+			return repositoryFacade.getBranches(options);
 		}
 		catch (IOException e) {
 			throw new GitException(e);
@@ -67,9 +69,9 @@ public class RepositoryApiImpl extends AbstractRepositoryApi implements Reposito
 	}
 
 	@Override
-	public Collection<TagModel> getTags() {
+	public Collection<TagModel> getTags(RefListOptions options) {
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
-			return repositoryFacade.getTags();
+			return repositoryFacade.getTags(options);
 		}
 		catch (IOException e) {
 			throw new GitException(e);
@@ -77,9 +79,9 @@ public class RepositoryApiImpl extends AbstractRepositoryApi implements Reposito
 	}
 
 	@Override
-	public DetailedRepositoryModel getRepositoryModel() {
+	public DetailedRepositoryModel getRepositoryModel(RepositoryFields fields) {
 		try(RepositoryFacade repositoryFacade = repositoryFacadeFactory.create(repository)) {
-			return repositoryFacade.getRepositoryModel();
+			return repositoryFacade.getRepositoryModel(fields == null ? RepositoryFields.ALL : fields);
 		}
 		catch (IOException e) {
 			throw new GitException(e);
@@ -131,6 +133,7 @@ public class RepositoryApiImpl extends AbstractRepositoryApi implements Reposito
 		Identifier identifier = Identifier.valueOf(repoName);
 		try {
 			managedConfig.writeConfig(config -> config.deleteIdentifierUses(identifier));
+			repositoryFacadeFactory.invalidate(repository);
 			repository.delete();
 			repositoriesManager.reload();
 		}
@@ -5,6 +5,8 @@ import lombok.SneakyThrows;
 import nl.tudelft.ewi.git.Config;
 import nl.tudelft.ewi.git.models.GroupModel;
 import nl.tudelft.ewi.git.models.IdentifiableModel;
+import nl.tudelft.ewi.git.models.RepositoryFields;
+import nl.tudelft.ewi.git.models.RepositoryFields.Field;
 import nl.tudelft.ewi.git.models.RepositoryModel;
 import nl.tudelft.ewi.git.models.RepositoryModel.Level;
 import nl.tudelft.ewi.git.models.SshKeyModel;
@@ -63,20 +65,34 @@ public class Transformers {
 		return sshKeyModel;
 	}
 
-	public RepositoryModel transformRepository(Repository repository) {
-		return setBaseAttributes(repository, new RepositoryModel());
+	public RepositoryModel transformRepository(Repository repository, RepositoryFields fields) {
+		return setBaseAttributes(repository, new RepositoryModel(), fields);
 	}
 
-	public <T extends RepositoryModel> T setBaseAttributes(Repository repository, T repositoryModel) {
+	/**
+	 * Set the name, and the url and permissions if these are requested, of a {@link RepositoryModel}.
+	 *
+	 * @param repository Repository to describe.
+	 * @param repositoryModel Model to set the attributes on.
+	 * @param fields The attributes to set. The name is always set.
+	 * @param <T> Type of the model.
+	 * @return the model.
+	 */
+	public <T extends RepositoryModel> T setBaseAttributes(Repository repository, T repositoryModel, RepositoryFields fields) {
 		String name = repository.getURI().toString();
 		name = name.substring(0, name.lastIndexOf(".git/"));
 		repositoryModel.setName(name);
-		repositoryModel.setUrl(config.getGitoliteBaseUrl() + name);
 
-		Identifier identifier = new Identifier(name);
-		Map<String, Level>  permissions = managedConfig.readConfigWithReturn(config ->
-			transformRepositoryRule(config.getRepositoryRule(identifier)));
-		repositoryModel.setPermissions(permissions);
+		if (fields.contains(Field.URL)) {
+			repositoryModel.setUrl(config.getGitoliteBaseUrl() + name);
+		}
+
+		if (fields.contains(Field.PERMISSIONS)) {
+			Identifier identifier = new Identifier(name);
+			Map<String, Level>  permissions = managedConfig.readConfigWithReturn(config ->
+				transformRepositoryRule(config.getRepositoryRule(identifier)));
+			repositoryModel.setPermissions(permissions);
+		}
 
 		return repositoryModel;
 	}
@@ -0,0 +1,43 @@
+package nl.tudelft.ewi.git.models;
+
+import com.google.common.collect.Lists;
+import nl.tudelft.ewi.git.models.BlameModel.BlameBlock;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class BlameModelTest {
+
+    @Test
+    public void testGetBlameBlockOfUnorderedBlocks() {
+        BlameModel blameModel = new BlameModel();
+        blameModel.setBlames(Lists.newArrayList(block(4, 3, "b"), block(1, 3, "a"), block(7, 1, "c")));
+
+        assertEquals("a", blameModel.getBlameBlock(1).getFromCommitId());
+        assertEquals("a", blameModel.getBlameBlock(3).getFromCommitId());
+        assertEquals("b", blameModel.getBlameBlock(4).getFromCommitId());
+        assertEquals("b", blameModel.getBlameBlock(6).getFromCommitId());
+        assertEquals("c", blameModel.getBlameBlock(7).getFromCommitId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBlameBlockOfMissingLine() {
+        BlameModel blameModel = new BlameModel();
+        blameModel.setBlames(Lists.newArrayList(block(1, 3, "a")));
+        blameModel.getBlameBlock(4);
+    }
+
+    private static BlameBlock block(int from, int length, String commitId) {
+        BlameBlock block = new BlameBlock();
+        block.setDestinationFrom(from);
+        block.setSourceFrom(from);
+        block.setLength(length);
+        block.setFromCommitId(commitId);
+        block.setFromFilePath("file.txt");
+        return block;
+    }
+
+}
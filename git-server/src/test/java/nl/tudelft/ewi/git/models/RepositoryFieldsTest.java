@@ -0,0 +1,40 @@
+package nl.tudelft.ewi.git.models;
+
+import nl.tudelft.ewi.git.models.RepositoryFields.Field;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class RepositoryFieldsTest {
+
+    @Test
+    public void testParseFields() {
+        RepositoryFields fields = RepositoryFields.valueOf("url, branch-names");
+        assertEquals(EnumSet.of(Field.URL, Field.BRANCH_NAMES), fields.getFields());
+        assertTrue(fields.contains(Field.BRANCH_NAMES));
+        assertFalse(fields.contains(Field.BRANCHES));
+    }
+
+    @Test
+    public void testEmptyFields() {
+        assertTrue(RepositoryFields.valueOf("").getFields().isEmpty());
+    }
+
+    @Test
+    public void testToStringCanBeParsed() {
+        assertEquals(RepositoryFields.ALL, RepositoryFields.valueOf(RepositoryFields.ALL.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        RepositoryFields.valueOf("url,unknown");
+    }
+
+}
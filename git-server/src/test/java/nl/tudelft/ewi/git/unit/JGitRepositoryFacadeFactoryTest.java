@@ -0,0 +1,67 @@
+package nl.tudelft.ewi.git.unit;
+
+import nl.tudelft.ewi.git.backend.JGitRepositoryFacade;
+import nl.tudelft.ewi.git.backend.JGitRepositoryFacadeFactory;
+import nl.tudelft.ewi.git.web.CucumberModule;
+import nl.tudelft.ewi.gitolite.repositories.PathRepositoriesManager;
+import nl.tudelft.ewi.gitolite.repositories.PathRepositoriesManager.PathRepositoryImpl;
+import org.eclipse.jgit.api.Git;
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Jan-Willem Gmelig Meyling
+ */
+@RunWith(JukitoRunner.class)
+@UseModules(CucumberModule.class)
+public class JGitRepositoryFacadeFactoryTest {
+
+	@Inject PathRepositoriesManager pathRepositoriesManager;
+	@Inject JGitRepositoryFacadeFactory repositoryFacadeFactory;
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	PathRepositoryImpl pathRepository;
+
+	@Before
+	public void setUp() throws Exception {
+		Git.init().setBare(false).setDirectory(temporaryFolder.getRoot()).call().close();
+		pathRepository = pathRepositoriesManager.new PathRepositoryImpl(temporaryFolder.getRoot().toPath());
+	}
+
+	@Test
+	public void testHandleIsReused() throws Exception {
+		JGitRepositoryFacade first = repositoryFacadeFactory.create(pathRepository);
+		first.close();
+
+		JGitRepositoryFacade second = repositoryFacadeFactory.create(pathRepository);
+		second.close();
+
+		assertSame(first, second);
+		assertFalse(second.isClosed());
+		assertTrue(repositoryFacadeFactory.getStatistics().hitCount() > 0);
+	}
+
+	@Test
+	public void testInvalidatedHandleClosesAfterLastUse() throws Exception {
+		JGitRepositoryFacade facade = repositoryFacadeFactory.create(pathRepository);
+		repositoryFacadeFactory.invalidate(pathRepository);
+		assertFalse(facade.isClosed());
+
+		facade.close();
+		assertTrue(facade.isClosed());
+
+		JGitRepositoryFacade reopened = repositoryFacadeFactory.create(pathRepository);
+		reopened.close();
+		assertNotSame(facade, reopened);
+	}
+
+}
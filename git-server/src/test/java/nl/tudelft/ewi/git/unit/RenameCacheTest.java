@@ -0,0 +1,140 @@
+package nl.tudelft.ewi.git.unit;
+
+import nl.tudelft.ewi.git.Config;
+import nl.tudelft.ewi.git.backend.RenameCache;
+import nl.tudelft.ewi.git.backend.RenameCache.Renames;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Jan-Willem Gmelig Meyling
+ */
+public class RenameCacheTest {
+
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	Git git;
+	ObjectReader reader;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(temporaryFolder.getRoot()).call();
+	}
+
+	@After
+	public void tearDown() {
+		if (reader != null) {
+			reader.close();
+		}
+		git.close();
+	}
+
+	@Test
+	public void testRenamesAreComplete() throws Exception {
+		List<DiffEntry> entries = renameFile("first line\nsecond line\nthird line\nchanged line\n");
+		Renames renames = createRenameCache(1000).detectRenames(git.getRepository(), reader, entries, new DiffOptions());
+
+		assertTrue(renames.isComplete());
+		assertEquals(1, renames.getEntries().size());
+		assertEquals(ChangeType.RENAME, renames.getEntries().get(0).getChangeType());
+	}
+
+	@Test
+	public void testTimedOutRenamesAreIncomplete() throws Exception {
+		List<DiffEntry> entries = renameFile("first line\nsecond line\nthird line\nchanged line\n");
+		Renames renames = createRenameCache(0).detectRenames(git.getRepository(), reader, entries, new DiffOptions());
+
+		assertFalse(renames.isComplete());
+		assertEquals(2, renames.getEntries().size());
+		// Sorted by path, so new-name.txt comes first
+		assertEquals(ChangeType.ADD, renames.getEntries().get(0).getChangeType());
+		assertEquals(ChangeType.DELETE, renames.getEntries().get(1).getChangeType());
+	}
+
+	@Test
+	public void testUnpairedFilesAreNotComparedAgain() throws Exception {
+		List<DiffEntry> entries = renameFile("something\ncompletely\ndifferent\n");
+		RenameCache renameCache = createRenameCache(1000);
+		DiffOptions options = new DiffOptions();
+
+		Renames renames = renameCache.detectRenames(git.getRepository(), reader, entries, options);
+		assertTrue(renames.isComplete());
+		assertEquals(2, renames.getEntries().size());
+
+		// Every pair is found in the cache
+		long misses = renameCache.getStatistics().missCount();
+		Renames cached = renameCache.detectRenames(git.getRepository(), reader, entries, options);
+		assertEquals(misses, renameCache.getStatistics().missCount());
+		assertTrue(cached.isComplete());
+		assertEquals(2, cached.getEntries().size());
+
+		// The pair may still be a rename with a lower rename score
+		options.setRenameScore(10);
+		renameCache.detectRenames(git.getRepository(), reader, entries, options);
+		assertThat(renameCache.getStatistics().missCount(), greaterThan(misses));
+	}
+
+	/*
+	 * Commit old-name.txt, and then replace it with new-name.txt with the given content.
+	 */
+	private List<DiffEntry> renameFile(String newContent) throws Exception {
+		File oldFile = writeFile("old-name.txt", "first line\nsecond line\nthird line\nfourth line\n");
+		RevCommit oldCommit = commit("Added old-name.txt");
+
+		Files.delete(oldFile.toPath());
+		writeFile("new-name.txt", newContent);
+		RevCommit newCommit = commit("Renamed old-name.txt");
+
+		reader = git.getRepository().newObjectReader();
+		try (TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.addTree(oldCommit.getTree());
+			treeWalk.addTree(newCommit.getTree());
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			return DiffEntry.scan(treeWalk);
+		}
+	}
+
+	private static RenameCache createRenameCache(long timeout) {
+		Config config = mock(Config.class);
+		when(config.getRenameCacheSize()).thenReturn(100);
+		when(config.getRenameTimeout()).thenReturn(timeout);
+		return new RenameCache(config);
+	}
+
+	private File writeFile(String path, String content) throws Exception {
+		File file = new File(temporaryFolder.getRoot(), path);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		git.add().setUpdate(true).addFilepattern(".").call();
+		return git.commit().setMessage(message).call();
+	}
+
+}
@@ -1,16 +1,40 @@
 package nl.tudelft.ewi.git.unit;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.google.common.io.ByteStreams;
 import lombok.extern.slf4j.Slf4j;
+import nl.tudelft.ewi.git.backend.BlameCache;
+import nl.tudelft.ewi.git.backend.BlameExecutor;
 import nl.tudelft.ewi.git.backend.JGitRepositoryFacade;
+import nl.tudelft.ewi.git.backend.JGitRepositoryFacadeFactory;
+import nl.tudelft.ewi.git.backend.RenameCache;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffContext;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffFile;
 import nl.tudelft.ewi.git.models.AbstractDiffModel.DiffLine;
+import nl.tudelft.ewi.git.models.BlameModel;
+import nl.tudelft.ewi.git.models.BranchModel;
+import nl.tudelft.ewi.git.models.ChangeType;
+import nl.tudelft.ewi.git.models.CommitModel;
+import nl.tudelft.ewi.git.models.CommitSubList;
+import nl.tudelft.ewi.git.models.CompactDiffModel;
+import nl.tudelft.ewi.git.models.CompactDiffModel.CompactDiffContext;
+import nl.tudelft.ewi.git.models.DetailedCommitModel;
 import nl.tudelft.ewi.git.models.DiffBlameModel;
+import nl.tudelft.ewi.git.models.DiffBlameModel.DiffBlameLine;
 import nl.tudelft.ewi.git.models.DiffModel;
+import nl.tudelft.ewi.git.models.DiffOptions;
+import nl.tudelft.ewi.git.models.DiffStatModel;
 import nl.tudelft.ewi.git.models.EntryType;
+import nl.tudelft.ewi.git.models.RefListOptions;
+import nl.tudelft.ewi.git.models.TagModel;
 import nl.tudelft.ewi.git.web.CucumberModule;
+import nl.tudelft.ewi.git.web.api.CommitApiImpl;
 import nl.tudelft.ewi.git.web.api.Transformers;
+import nl.tudelft.ewi.gitolite.ManagedConfig;
 import nl.tudelft.ewi.gitolite.repositories.PathRepositoriesManager;
 import nl.tudelft.ewi.gitolite.repositories.PathRepositoriesManager.PathRepositoryImpl;
 
@@ -18,6 +42,8 @@ import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoFilepatternException;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.jukito.JukitoRunner;
 import org.jukito.UseModules;
@@ -28,16 +54,32 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Jan-Willem Gmelig Meyling
@@ -47,8 +89,13 @@ import static org.hamcrest.Matchers.*;
 @UseModules(CucumberModule.class)
 public class RepositoryFacadeTest {
 
-	@Inject Transformers transformers;
+	@Inject JGitRepositoryFacadeFactory repositoryFacadeFactory;
 	@Inject PathRepositoriesManager pathRepositoriesManager;
+	@Inject BlameCache blameCache;
+	@Inject BlameExecutor blameExecutor;
+	@Inject RenameCache renameCache;
+	@Inject ManagedConfig managedConfig;
+	@Inject Transformers transformers;
 	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
 	Git git;
@@ -59,17 +106,61 @@ public class RepositoryFacadeTest {
 	public void setUp() throws GitAPIException, IOException {
 		Git.init().setBare(false).setDirectory(temporaryFolder.getRoot()).call();
 		pathRepository = pathRepositoriesManager.new PathRepositoryImpl(temporaryFolder.getRoot().toPath());
-		gitRepositoryFacade = new JGitRepositoryFacade(transformers, pathRepository);
+		gitRepositoryFacade = repositoryFacadeFactory.create(pathRepository);
 		git = gitRepositoryFacade.getGit();
 	}
 
+	@Test(expected = NotFoundException.class)
+	public void testCommitOfOtherRepositoryIsNotFound() throws Exception {
+		addFile("my-file.txt", "Initial content");
+		createCommit("Added my-file.txt");
+
+		try (JGitRepositoryFacade otherRepositoryFacade = createOtherRepository()) {
+			otherRepositoryFacade.getGit().add().addFilepattern(".").call();
+			RevCommit otherCommit = otherRepositoryFacade.getGit().commit().setMessage("Other commit").call();
+			// Cache the commit through the other repository
+			otherRepositoryFacade.retrieveCommit(otherCommit.getName());
+
+			gitRepositoryFacade.retrieveCommit(otherCommit.getName());
+		}
+	}
+
+	@Test
+	public void testBlameOfOtherRepositoryIsNotFound() throws Exception {
+		addFile("other-file.txt", "Initial content");
+		createCommit("Added other-file.txt");
+
+		try (JGitRepositoryFacade otherRepositoryFacade = createOtherRepository()) {
+			otherRepositoryFacade.getGit().add().addFilepattern(".").call();
+			RevCommit otherCommit = otherRepositoryFacade.getGit().commit().setMessage("Other commit").call();
+			// Cache the blame through the other repository
+			otherRepositoryFacade.blame(otherCommit.getName(), "other-file.txt");
+
+			try {
+				gitRepositoryFacade.blame(otherCommit.getName(), "other-file.txt");
+				fail("Blame of another repository should not be found");
+			}
+			catch (NotFoundException e) {
+				// Expected
+			}
+
+			try {
+				gitRepositoryFacade.blame(otherCommit.getName(), "other-file.txt", ImmutableRangeSet.of(Range.closed(1, 1)));
+				fail("Blame of another repository should not be found");
+			}
+			catch (NotFoundException e) {
+				// Expected
+			}
+		}
+	}
+
 	@Test
 	public void testGitBlameWithSubmodule() throws Exception {
 		addSubmodule();
 		RevCommit commit = createCommit();
 		String commitId = commit.getName();
 
-		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commitId, 3);
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commitId, 3, new DiffOptions());
 
 		DiffBlameModel diffBlameModel = gitRepositoryFacade.addBlameData(diff);
 		assertEquals(".gitmodules", diffBlameModel.getDiffs().get(0).getNewPath());
@@ -87,10 +178,341 @@ public class RepositoryFacadeTest {
 		RevCommit commit2 = createCommit("Deleted my-file.txt");
 		String commitId2 = commit2.getName();
 		
-		DiffFile<DiffContext<DiffLine>> diffFile =  gitRepositoryFacade.calculateDiff(commitId1, commitId2, 3).getDiffs().get(0);
+		DiffFile<DiffContext<DiffLine>> diffFile =  gitRepositoryFacade.calculateDiff(commitId1, commitId2, 3, new DiffOptions()).getDiffs().get(0);
 		assertEquals("/dev/null", diffFile.getNewPath());
 	}
 
+	@Test
+	public void testDiffIsSharedBetweenCommitsWithSameTrees() throws Exception {
+		addFile("my-file.txt", "Initial content");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "Changed content");
+		RevCommit commit2 = createCommit("Changed my-file.txt");
+
+		DiffModel first = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+		DiffModel second = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+
+		assertSame(first.getDiffs(), second.getDiffs());
+		assertEquals(commit2.getName(), second.getNewCommit().getCommit());
+	}
+
+	@Test
+	public void testBlameIsReusedWhileFileIsUnchanged() throws Exception {
+		addFile("my-file.txt", "Initial content");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("other-file.txt", "Other content");
+		RevCommit commit2 = createCommit("Added other-file.txt");
+
+		BlameModel first = gitRepositoryFacade.blame(commit1.getName(), "my-file.txt");
+		long hits = blameCache.getStatistics().hitCount();
+		BlameModel second = gitRepositoryFacade.blame(commit2.getName(), "my-file.txt");
+
+		assertEquals(hits + 1, blameCache.getStatistics().hitCount());
+		assertEquals(commit2.getName(), second.getCommitId());
+		assertEquals(first.getBlames(), second.getBlames());
+		assertEquals(commit1.getName(), second.getBlameBlock(1).getFromCommitId());
+	}
+
+	@Test
+	public void testBlameOfLinesIsReusedWhileFileIsUnchanged() throws Exception {
+		addFile("my-file.txt", "first line\nsecond line\nthird line\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("other-file.txt", "Other content");
+		RevCommit commit2 = createCommit("Added other-file.txt");
+		addFile("other-file.txt", "Changed content");
+		RevCommit commit3 = createCommit("Changed other-file.txt");
+
+		BlameModel first = gitRepositoryFacade.blame(commit2.getName(), "my-file.txt", ImmutableRangeSet.of(Range.closed(2, 2)));
+		long hits = blameCache.getStatistics().hitCount();
+		BlameModel second = gitRepositoryFacade.blame(commit3.getName(), "my-file.txt", ImmutableRangeSet.of(Range.closed(2, 2)));
+		assertEquals(hits + 1, blameCache.getStatistics().hitCount());
+		assertEquals(commit3.getName(), second.getCommitId());
+		assertEquals(first.getBlames(), second.getBlames());
+
+		// Other lines are answered from the blame of the whole file
+		gitRepositoryFacade.blame(commit1.getName(), "my-file.txt");
+		hits = blameCache.getStatistics().hitCount();
+		BlameModel third = gitRepositoryFacade.blame(commit3.getName(), "my-file.txt", ImmutableRangeSet.of(Range.closed(3, 3)));
+		assertEquals(hits + 1, blameCache.getStatistics().hitCount());
+		assertEquals(commit1.getName(), third.getBlameBlock(3).getFromCommitId());
+	}
+
+	@Test
+	public void testDiffWithManyFilesKeepsOrder() throws Exception {
+		List<String> paths = Lists.newArrayList();
+		for (int i = 0; i < 20; i++) {
+			String path = String.format("file-%02d.txt", i);
+			addFile(path, "Content of " + path);
+			paths.add(path);
+		}
+		RevCommit commit = createCommit("Added files");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commit.getName(), 3, new DiffOptions());
+		assertEquals(paths, diff.getDiffs().stream()
+			.map(DiffFile::getNewPath)
+			.collect(Collectors.toList()));
+		assertEquals(1, diff.getDiffs().get(19).getLinesAdded());
+	}
+
+	@Test
+	public void testStreamedDiffEqualsDiff() throws Exception {
+		addFile("my-file.txt", "Initial content");
+		addFile("other-file.txt", "Other content");
+		RevCommit commit = createCommit("Added files");
+
+		List<DiffFile<DiffContext<DiffLine>>> streamed = Lists.newArrayList();
+		DiffModel streamedDiff = gitRepositoryFacade.calculateDiff(null, commit.getName(), 3, new DiffOptions(), streamed::add);
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commit.getName(), 3, new DiffOptions());
+
+		assertEquals(diff.getDiffs(), streamed);
+		assertEquals(diff.getCommits(), streamedDiff.getCommits());
+		assertNull(streamedDiff.getDiffs());
+	}
+
+	@Test
+	public void testDiffIgnoringWhitespace() throws Exception {
+		addFile("my-file.txt", "first line\nsecond line\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "first line\n\tsecond line  \n");
+		RevCommit commit2 = createCommit("Indented my-file.txt");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+		assertEquals(1, diff.getDiffs().get(0).getLinesAdded());
+
+		DiffOptions options = new DiffOptions(DiffOptions.Algorithm.HISTOGRAM, DiffOptions.Whitespace.IGNORE_ALL);
+		DiffModel ignoringWhitespace = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, options);
+		assertEquals(0, ignoringWhitespace.getDiffs().get(0).getLinesAdded());
+		assertEquals("my-file.txt", ignoringWhitespace.getDiffs().get(0).getNewPath());
+	}
+
+	@Test
+	public void testLargeFileIsTruncated() throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1500; i++) {
+			content.append("Line ").append(i).append('\n');
+		}
+		addFile("large-file.txt", content.toString());
+		addFile("small-file.txt", "Small content");
+		RevCommit commit = createCommit("Added files");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commit.getName(), 3, new DiffOptions());
+		DiffFile<DiffContext<DiffLine>> largeFile = diff.getDiffs().get(0);
+		assertTrue(largeFile.isTruncated());
+		assertThat(largeFile.getContexts(), empty());
+		assertEquals(1500, largeFile.getLinesAdded());
+		assertFalse(diff.getDiffs().get(1).isTruncated());
+		assertEquals(1, diff.getDiffs().get(1).getLinesAdded());
+
+		DiffFile<DiffContext<DiffLine>> fullFile = gitRepositoryFacade.calculateDiffFile(null, commit.getName(),
+			"large-file.txt", 3, new DiffOptions());
+		assertFalse(fullFile.isTruncated());
+		assertEquals(1500, fullFile.getLinesAdded());
+	}
+
+	@Test
+	public void testDiffStatEqualsDiff() throws Exception {
+		addFile("my-file.txt", "first line\nsecond line\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "first line\nchanged line\nthird line\n");
+		addFile("other-file.txt", "Other content");
+		RevCommit commit2 = createCommit("Changed my-file.txt");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+		DiffStatModel diffStat = gitRepositoryFacade.calculateDiffStat(commit1.getName(), commit2.getName(), new DiffOptions());
+
+		assertEquals(diff.getDiffs().size(), diffStat.getFiles().size());
+		for (int i = 0; i < diff.getDiffs().size(); i++) {
+			assertEquals(diff.getDiffs().get(i).getNewPath(), diffStat.getFiles().get(i).getNewPath());
+			assertEquals(Integer.valueOf(diff.getDiffs().get(i).getLinesAdded()), diffStat.getFiles().get(i).getAdditions());
+			assertEquals(Integer.valueOf(diff.getDiffs().get(i).getLinesRemoved()), diffStat.getFiles().get(i).getDeletions());
+		}
+		assertEquals(3, diffStat.getAdditions());
+		assertEquals(1, diffStat.getDeletions());
+	}
+
+	@Test
+	public void testCompactDiffDecodesToSameLines() throws Exception {
+		addFile("my-file.txt", "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "1\n2\nthree\n4\n5\n6\n7\n9\n10\neleven\n");
+		RevCommit commit2 = createCommit("Changed my-file.txt");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+		ObjectMapper objectMapper = new ObjectMapper();
+		CompactDiffModel compactDiff = objectMapper.readValue(
+			objectMapper.writeValueAsString(CompactDiffModel.of(diff)), CompactDiffModel.class);
+
+		DiffFile<DiffContext<DiffLine>> diffFile = diff.getDiffs().get(0);
+		DiffFile<CompactDiffContext> compactDiffFile = compactDiff.getDiffs().get(0);
+		assertEquals(diffFile.getContexts().size(), compactDiffFile.getContexts().size());
+		for (int i = 0; i < diffFile.getContexts().size(); i++) {
+			assertEquals(diffFile.getContexts().get(i).getLines(), compactDiffFile.getContexts().get(i).getLines());
+		}
+		assertEquals(diffFile.getLinesAdded(), compactDiffFile.getLinesAdded());
+		assertEquals(diffFile.getLinesRemoved(), compactDiffFile.getLinesRemoved());
+	}
+
+	@Test
+	public void testEncodedCompactDiffDecodesToSameLines() throws Exception {
+		addFile("my-file.txt", "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "zero\n1\n2\nthree\n4\n5\n6\n7\n9\n10\neleven\n\n");
+		addFile("new-file.txt", "\nnew\n");
+		RevCommit commit2 = createCommit("Changed my-file.txt");
+
+		// Calculate the compact diff first, so it is encoded from the edits instead of the cached lines
+		CompactDiffModel compactDiff = gitRepositoryFacade.calculateCompactDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+
+		assertEquals(diff.getDiffs().size(), compactDiff.getDiffs().size());
+		for (int i = 0; i < diff.getDiffs().size(); i++) {
+			DiffFile<DiffContext<DiffLine>> diffFile = diff.getDiffs().get(i);
+			DiffFile<CompactDiffContext> compactDiffFile = compactDiff.getDiffs().get(i);
+			assertEquals(diffFile.getNewPath(), compactDiffFile.getNewPath());
+			assertEquals(diffFile.getContexts().size(), compactDiffFile.getContexts().size());
+			for (int j = 0; j < diffFile.getContexts().size(); j++) {
+				assertEquals(diffFile.getContexts().get(j).getLines(), compactDiffFile.getContexts().get(j).getLines());
+			}
+		}
+		// The added file has no old lines, and its first line is empty
+		assertEquals(0, compactDiff.getDiffs().get(1).getContexts().get(0).getOldStart());
+		assertEquals(diff.getCommits(), compactDiff.getCommits());
+	}
+
+	@Test
+	public void testRenameDetectionCanBeDisabled() throws Exception {
+		addFile("old-name.txt", "first line\nsecond line\nthird line\nfourth line\n");
+		RevCommit commit1 = createCommit("Added old-name.txt");
+		deleteFile("old-name.txt");
+		addFile("new-name.txt", "first line\nsecond line\nthird line\nchanged line\n");
+		RevCommit commit2 = createCommit("Renamed old-name.txt");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+		assertEquals(1, diff.getDiffs().size());
+		assertTrue(diff.getDiffs().get(0).isMoved());
+
+		long hits = renameCache.getStatistics().hitCount();
+		DiffModel otherContext = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+		assertTrue(otherContext.getDiffs().get(0).isMoved());
+		assertThat(renameCache.getStatistics().hitCount(), greaterThan(hits));
+
+		DiffOptions options = new DiffOptions();
+		options.setDetectRenames(false);
+		DiffModel withoutRenames = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, options);
+		assertEquals(2, withoutRenames.getDiffs().size());
+	}
+
+	@Test
+	public void testCachedRenamesKeepOrderOfRenameDetector() throws Exception {
+		addFile("a-link", "first line\n");
+		addFile("old-name.txt", "first line\nsecond line\nthird line\nfourth line\n");
+		RevCommit commit1 = createCommit("Added old-name.txt");
+		deleteFile("a-link");
+		addSymbolicLink(addReadme("README.md"), "a-link");
+		deleteFile("old-name.txt");
+		addFile("new-name.txt", "first line\nsecond line\nthird line\nchanged line\n");
+		RevCommit commit2 = createCommit("Renamed old-name.txt");
+
+		List<ChangeType> expected = Lists.newArrayList(ChangeType.ADD, ChangeType.DELETE, ChangeType.ADD, ChangeType.RENAME);
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 3, new DiffOptions());
+		assertEquals(expected, diff.getDiffs().stream().map(DiffFile::getType).collect(Collectors.toList()));
+
+		// The rename is paired from the cache, which sorts the entries itself
+		DiffModel otherContext = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+		assertEquals(expected, otherContext.getDiffs().stream().map(DiffFile::getType).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testBlameIsRestrictedToRequestedLines() throws Exception {
+		addFile("my-file.txt", "first line\nsecond line\nthird line\n");
+		RevCommit commit1 = createCommit("Added my-file.txt");
+		addFile("my-file.txt", "first line\nsecond line\nthird line\nfourth line\n");
+		RevCommit commit2 = createCommit("Appended to my-file.txt");
+
+		BlameModel blame = gitRepositoryFacade.blame(commit2.getName(), "my-file.txt",
+			ImmutableRangeSet.of(Range.closed(4, 4)));
+		assertEquals(1, blame.getBlames().size());
+		assertEquals(commit2.getName(), blame.getBlameBlock(4).getFromCommitId());
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(commit1.getName(), commit2.getName(), 1, new DiffOptions());
+		DiffBlameModel diffBlame = gitRepositoryFacade.addBlameData(diff);
+		List<DiffBlameLine> lines = diffBlame.getDiffs().get(0).getContexts().get(0).getLines();
+		assertEquals(commit1.getName(), lines.get(0).getSourceCommitId());
+		assertEquals(commit2.getName(), lines.get(1).getSourceCommitId());
+	}
+
+	@Test
+	public void testStreamedBlameEqualsBlame() throws Exception {
+		addFile("my-file.txt", "first line\nsecond line\nthird line\n");
+		createCommit("Added my-file.txt");
+		addFile("my-file.txt", "first line\nchanged line\nthird line\nfourth line\n");
+		RevCommit commit = createCommit("Changed my-file.txt");
+
+		BlameModel streamed = new BlameModel();
+		streamed.setBlames(Lists.newArrayList());
+		gitRepositoryFacade.blame(commit.getName(), "my-file.txt", streamed.getBlames()::add);
+		BlameModel blame = gitRepositoryFacade.blame(commit.getName(), "my-file.txt");
+
+		for (int lineNumber = 1; lineNumber <= 4; lineNumber++) {
+			assertEquals(blame.getBlameBlock(lineNumber).getFromCommitId(),
+				streamed.getBlameBlock(lineNumber).getFromCommitId());
+		}
+	}
+
+	@Test
+	public void testCancelledBlameIsSkipped() throws Exception {
+		addFile("my-file.txt", "Initial content");
+		RevCommit commit = createCommit("Added my-file.txt");
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commit.getName(), 3, new DiffOptions());
+		long cancelled = blameExecutor.getStatistics().getCancelledCount();
+		try {
+			gitRepositoryFacade.addBlameData(diff, () -> true);
+			fail("Blame should be cancelled");
+		}
+		catch (CancellationException e) {
+			assertEquals(cancelled + 1, blameExecutor.getStatistics().getCancelledCount());
+		}
+	}
+
+	@Test
+	public void testBlameStopsWhenClientDisconnects() throws Exception {
+		int files = 30;
+		for (int i = 0; i < files; i++) {
+			addFile("file-" + i + ".txt", "first line\nsecond line\n");
+		}
+		createCommit("Added files");
+		for (int i = 0; i < files; i++) {
+			addFile("file-" + i + ".txt", "first line\nchanged line\n");
+		}
+		RevCommit commit = createCommit("Changed files");
+
+		CommitApiImpl commitApi = new CommitApiImpl(managedConfig, transformers, repositoryFacadeFactory,
+			pathRepository, commit.getName());
+		StreamingOutput output = (StreamingOutput) commitApi.diffBlameStream(3, new DiffOptions()).getEntity();
+
+		// The client disconnects after the first probe
+		AtomicInteger writes = new AtomicInteger();
+		OutputStream outputStream = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				if (writes.incrementAndGet() > 1) {
+					throw new IOException("Broken pipe");
+				}
+			}
+		};
+
+		long requests = blameCache.getStatistics().requestCount();
+		try {
+			output.write(outputStream);
+			fail("Blame should be cancelled");
+		}
+		catch (CancellationException e) {
+			// Every blamed file looks up its old and new blame, so most files were skipped
+			assertThat(blameCache.getStatistics().requestCount() - requests, lessThan((long) files));
+		}
+	}
+
 	@Test
 	public void testGitTreeWithSubmodule() throws Exception {
 		addSubmodule();
@@ -109,10 +531,69 @@ public class RepositoryFacadeTest {
 		RevCommit commit = createCommit();
 		String commitId = commit.getName();
 
-		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commitId, 3);
+		DiffModel diff = gitRepositoryFacade.calculateDiff(null, commitId, 3, new DiffOptions());
 		gitRepositoryFacade.addBlameData(diff); // Should not fail
 	}
 
+	@Test
+	public void testGitTreeOfFolderListsOnlyChildren() throws Exception {
+		addFile("README.md", "Readme");
+		addFile("src/Main.java", "class Main {}");
+		addFile("src/nested/Util.java", "class Util {}");
+		RevCommit commit = createCommit("Added sources");
+		String commitId = commit.getName();
+
+		assertThat(gitRepositoryFacade.showTree(commitId, "src"),
+			equalTo(ImmutableMap.of("Main.java", EntryType.TEXT, "nested/", EntryType.FOLDER)));
+		assertThat(gitRepositoryFacade.showTree(commitId, "src/nested/"),
+			equalTo(ImmutableMap.of("Util.java", EntryType.TEXT)));
+	}
+
+	@Test
+	public void testShowFileUsesExactPath() throws Exception {
+		addFile("README", "Short");
+		addFile("README.md", "Markdown");
+		RevCommit commit = createCommit("Added readmes");
+
+		ObjectLoader objectLoader = gitRepositoryFacade.showFile(commit.getName(), "README.md");
+		assertEquals("Markdown", new String(objectLoader.getCachedBytes(), "UTF-8"));
+	}
+
+	@Test
+	public void testDownloadFileAnswersConditionalAndRangeRequests() throws Exception {
+		addFile("README.md", "Markdown");
+		RevCommit commit = createCommit("Added readme");
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		CommitApiImpl commitApi = new CommitApiImpl(managedConfig, transformers, repositoryFacadeFactory,
+			pathRepository, commit.getName());
+		commitApi.setRequest(request);
+
+		Response response = commitApi.downloadFile("README.md");
+		assertEquals(Status.OK.getStatusCode(), response.getStatus());
+		EntityTag entityTag = response.getEntityTag();
+
+		when(request.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(entityTag.toString());
+		assertEquals(Status.NOT_MODIFIED.getStatusCode(), commitApi.downloadFile("README.md").getStatus());
+
+		when(request.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn(null);
+		when(request.getHeader("Range")).thenReturn("bytes=2-4");
+		response = commitApi.downloadFile("README.md");
+		assertEquals(Status.PARTIAL_CONTENT.getStatusCode(), response.getStatus());
+		assertEquals("bytes 2-4/8", response.getHeaderString("Content-Range"));
+		assertEquals("rkd", new String(ByteStreams.toByteArray((InputStream) response.getEntity()), "UTF-8"));
+
+		when(request.getHeader("Range")).thenReturn("bytes=100-");
+		assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode(), commitApi.downloadFile("README.md").getStatus());
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testShowFileForFolderIsNotFound() throws Exception {
+		addFile("src/Main.java", "class Main {}");
+		RevCommit commit = createCommit("Added sources");
+
+		gitRepositoryFacade.showFile(commit.getName(), "src");
+	}
+
 	@Test
 	public void testGitTreeWithSymbolicLink() throws Exception {
 		File readme = addReadme("README.md");
@@ -125,6 +606,169 @@ public class RepositoryFacadeTest {
 		assertThat(tree, equalTo(ImmutableMap.of("README.md", EntryType.TEXT, "symbolic-link", EntryType.TEXT)));
 	}
 
+	@Test
+	public void testAheadBehindCountsWhenTipsMove() throws Exception {
+		addFile("a.txt", "a");
+		createCommit("A");
+		git.checkout().setCreateBranch(true).setName("feature").call();
+		addFile("b.txt", "b");
+		createCommit("B");
+		addFile("c.txt", "c");
+		createCommit("C");
+		assertAheadBehind(2, 0);
+
+		git.checkout().setName("master").call();
+		addFile("d.txt", "d");
+		createCommit("D");
+		assertAheadBehind(2, 1);
+
+		git.checkout().setName("feature").call();
+		addFile("e.txt", "e");
+		createCommit("E");
+		assertAheadBehind(3, 1);
+
+		git.merge().include(git.getRepository().getRef("master")).setMessage("Merge master").call();
+		assertAheadBehind(4, 0);
+	}
+
+	@Test
+	public void testCommitsForBranchWithMerge() throws Exception {
+		addFile("a.txt", "a");
+		createCommit("A");
+		git.checkout().setCreateBranch(true).setName("feature").call();
+		addFile("b.txt", "b");
+		createCommit("B");
+		git.checkout().setName("master").call();
+		addFile("c.txt", "c");
+		createCommit("C");
+		git.merge().include(git.getRepository().getRef("feature")).setMessage("Merge feature").call();
+
+		CommitSubList firstPage = gitRepositoryFacade.getCommitsFor("master", 0, 3);
+		assertEquals(4, firstPage.getTotal());
+		assertEquals(3, firstPage.getCommits().size());
+		assertEquals("Merge feature", firstPage.getCommits().get(0).getMessage());
+
+		CommitSubList secondPage = gitRepositoryFacade.getCommitsFor("master", 3, 3);
+		assertEquals(4, secondPage.getTotal());
+		assertEquals(1, secondPage.getCommits().size());
+		assertEquals("A", secondPage.getCommits().get(0).getMessage());
+	}
+
+	@Test
+	public void testGetBranchPrefersExactName() throws Exception {
+		addFile("a.txt", "a");
+		RevCommit master = createCommit("A");
+		git.branchCreate().setName("a-feature").call();
+		git.checkout().setCreateBranch(true).setName("feature").call();
+		addFile("b.txt", "b");
+		RevCommit feature = createCommit("B");
+
+		assertEquals("refs/heads/feature", gitRepositoryFacade.getBranch("feature").getName());
+		assertEquals(feature.getName(), gitRepositoryFacade.getBranch("refs/heads/feature").getCommit().getCommit());
+		assertEquals(master.getName(), gitRepositoryFacade.getBranch("-feature").getCommit().getCommit());
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void testGetMissingBranch() throws Exception {
+		addFile("a.txt", "a");
+		createCommit("A");
+		gitRepositoryFacade.getBranch("missing");
+	}
+
+	@Test
+	public void testBranchDiffEqualsDiffWithMergeBase() throws Exception {
+		addFile("a.txt", "a");
+		RevCommit mergeBase = createCommit("A");
+		git.checkout().setCreateBranch(true).setName("feature").call();
+		addFile("b.txt", "b");
+		RevCommit feature = createCommit("B");
+		git.checkout().setName("master").call();
+		addFile("c.txt", "c");
+		createCommit("C");
+
+		DiffModel branchDiff = gitRepositoryFacade.calculateBranchDiff("feature", 3, new DiffOptions());
+		DiffModel diff = gitRepositoryFacade.calculateDiff(mergeBase.getName(), feature.getName(), 3, new DiffOptions());
+		assertEquals(diff, branchDiff);
+		assertEquals(mergeBase.getName(), branchDiff.getOldCommit().getCommit());
+		assertEquals(1, branchDiff.getCommits().size());
+		assertEquals(feature, gitRepositoryFacade.resolveBranch("feature"));
+	}
+
+	@Test
+	public void testDiffCommitsArePaginated() throws Exception {
+		addFile("a.txt", "a");
+		RevCommit base = createCommit("A");
+		for (int i = 0; i < 5; i++) {
+			addFile("b.txt", "b" + i);
+			createCommit("B" + i + "\n\nBody");
+		}
+		String head = git.getRepository().resolve("HEAD").getName();
+
+		DiffModel diff = gitRepositoryFacade.calculateDiff(base.getName(), head, 3, new DiffOptions());
+		assertEquals(5, diff.getCommits().size());
+		assertNull(diff.getCommitsCursor());
+
+		DiffOptions options = new DiffOptions();
+		options.setCommits(DiffOptions.CommitDetail.SUMMARY);
+		options.setCommitsLimit(2);
+		List<CommitModel> commits = Lists.newArrayList();
+		do {
+			DiffModel page = gitRepositoryFacade.calculateDiff(base.getName(), head, 3, options);
+			assertThat(page.getCommits().size(), lessThanOrEqualTo(2));
+			assertEquals(diff.getDiffs(), page.getDiffs());
+			commits.addAll(page.getCommits());
+			options.setCommitsAfter(page.getCommitsCursor());
+		}
+		while (options.getCommitsAfter() != null);
+
+		assertEquals(diff.getCommits().stream().map(CommitModel::getCommit).collect(Collectors.toList()),
+			commits.stream().map(CommitModel::getCommit).collect(Collectors.toList()));
+		assertFalse(commits.get(0) instanceof DetailedCommitModel);
+
+		options.setCommits(DiffOptions.CommitDetail.NONE);
+		assertTrue(gitRepositoryFacade.calculateDiff(base.getName(), head, 3, options).getCommits().isEmpty());
+	}
+
+	@Test
+	public void testTagsArePaginatedAndSorted() throws Exception {
+		addFile("a.txt", "a");
+		RevCommit older = createCommit("A", 1000);
+		addFile("b.txt", "b");
+		RevCommit newer = createCommit("B", 2000);
+		for (String name : new String[] { "d", "b", "e", "a", "c" }) {
+			git.tag().setName(name).setObjectId(name.equals("b") ? newer : older).call();
+		}
+
+		RefListOptions options = new RefListOptions();
+		options.setLimit(2);
+		assertEquals(Lists.newArrayList("refs/tags/a", "refs/tags/b", "refs/tags/c", "refs/tags/d", "refs/tags/e"),
+			listTagNames(options));
+
+		options.setSort(RefListOptions.Sort.COMMIT_TIME);
+		assertEquals(Lists.newArrayList("refs/tags/b", "refs/tags/a", "refs/tags/c", "refs/tags/d", "refs/tags/e"),
+			listTagNames(options));
+	}
+
+	private List<String> listTagNames(RefListOptions options) {
+		List<String> names = Lists.newArrayList();
+		Collection<TagModel> page;
+		options.setAfter(null);
+		do {
+			page = gitRepositoryFacade.getTags(options);
+			assertThat(page.size(), lessThanOrEqualTo(options.getLimit()));
+			page.forEach(tag -> names.add(tag.getName()));
+			options.setAfter(names.isEmpty() ? null : names.get(names.size() - 1));
+		}
+		while (page.size() == options.getLimit());
+		return names;
+	}
+
+	private void assertAheadBehind(int ahead, int behind) {
+		BranchModel feature = gitRepositoryFacade.getBranch("feature");
+		assertEquals(Integer.valueOf(ahead), feature.getAhead());
+		assertEquals(Integer.valueOf(behind), feature.getBehind());
+	}
+
 	private File addReadme(String name) throws IOException, GitAPIException {
 		File readme = new File(temporaryFolder.getRoot(), name);
 		try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(readme))) {
@@ -139,6 +783,13 @@ public class RepositoryFacadeTest {
 		git.add().addFilepattern(name).call();
 	}
 
+	private JGitRepositoryFacade createOtherRepository() throws IOException, GitAPIException {
+		File folder = temporaryFolder.newFolder();
+		Git.init().setBare(false).setDirectory(folder).call().close();
+		FileUtils.write(new File(folder, "other-file.txt"), "Other content");
+		return repositoryFacadeFactory.create(pathRepositoriesManager.new PathRepositoryImpl(folder.toPath()));
+	}
+
 	private RevCommit createCommit() throws GitAPIException {
 		return git.commit().setMessage("Added submodule").call();
 	}
@@ -147,6 +798,11 @@ public class RepositoryFacadeTest {
 		return git.commit().setMessage(message).call();
 	}
 
+	private RevCommit createCommit(String message, long time) throws GitAPIException {
+		PersonIdent ident = new PersonIdent("Author", "author@example.com", time * 1000, 0);
+		return git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+	}
+
 	private void addSubmodule() throws GitAPIException {
 		git.submoduleAdd().setURI("https://github.com/octocat/Spoon-Knife.git").setPath("Spoon-Knife").call();
 	}
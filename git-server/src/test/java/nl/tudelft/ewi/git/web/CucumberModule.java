@@ -73,6 +73,8 @@ public class CucumberModule extends AbstractModule {
 	private File keyDir = ensureExists(new File(adminFolder, "keydir"));
 	private File mirrorsFolder = Files.createTempDir();
 	private File repositoriesFolder = Files.createTempDir();
+	private File diffCacheFolder = Files.createTempDir();
+	private File commitCountFolder = Files.createTempDir();
 
 	@Spy private KeyStore keyStore = new KeyStoreImpl(keyDir);
 	@Spy private GitManager gitManager = new MockedGitManager();
@@ -85,6 +87,7 @@ public class CucumberModule extends AbstractModule {
 		MockitoAnnotations.initMocks(this);
 		createMockedMirrorsFolder();
 		createMockedRepositoriesFolder();
+		createMockedRepositoryPool();
 		createMockedGitoliteManagerRepo();
 
 		bind(nl.tudelft.ewi.git.Config.class).toInstance(configuration);
@@ -136,6 +139,30 @@ public class CucumberModule extends AbstractModule {
 		log.info("Initialized bare repository folder in {}", repositoriesPath);
 	}
 
+	protected void createMockedRepositoryPool() {
+		when(configuration.getMaxOpenRepositories()).thenReturn(16);
+		when(configuration.getRepositoryIdleTimeout()).thenReturn(60);
+		when(configuration.getCommitModelCacheSize()).thenReturn(1000);
+		when(configuration.getBlameCacheSize()).thenReturn(100);
+		when(configuration.getEntryTypeCacheSize()).thenReturn(1000);
+		when(configuration.getDiffStatCacheSize()).thenReturn(100);
+		when(configuration.getRenameCacheSize()).thenReturn(100);
+		when(configuration.getRenameTimeout()).thenReturn(1000L);
+		when(configuration.getDiffThreads()).thenReturn(2);
+		when(configuration.getDiffQueueSize()).thenReturn(16);
+		when(configuration.getDiffRequestParallelism()).thenReturn(2);
+		when(configuration.getBlameThreads()).thenReturn(2);
+		when(configuration.getBlameQueueSize()).thenReturn(16);
+		when(configuration.getBlameRequestParallelism()).thenReturn(2);
+		when(configuration.getDiffFileLineLimit()).thenReturn(1000);
+		when(configuration.getDiffFileByteLimit()).thenReturn(1024 * 1024);
+		when(configuration.getDiffLineBudget()).thenReturn(5000);
+		when(configuration.getDiffCacheMemorySize()).thenReturn(1024L * 1024L);
+		when(configuration.getDiffCacheDiskSize()).thenReturn(16L * 1024L * 1024L);
+		when(configuration.getDiffCacheDirectory()).thenReturn(diffCacheFolder);
+		when(configuration.getCommitCountDirectory()).thenReturn(commitCountFolder);
+	}
+
 	@Provides
 	@Singleton
 	public RepositoriesManager getRepositoriesManager(nl.tudelft.ewi.git.Config config) {
@@ -152,6 +179,8 @@ public class CucumberModule extends AbstractModule {
 		FileUtils.deleteDirectory(repositoriesFolder);
 		FileUtils.deleteDirectory(adminFolder);
 		FileUtils.deleteDirectory(mirrorsFolder);
+		FileUtils.deleteDirectory(diffCacheFolder);
+		FileUtils.deleteDirectory(commitCountFolder);
 	}
 
 	/**